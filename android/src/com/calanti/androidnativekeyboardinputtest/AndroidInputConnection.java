@@ -0,0 +1,157 @@
+package com.calanti.androidnativekeyboardinputtest;
+
+import android.text.TextUtils;
+import android.view.KeyEvent;
+import android.view.inputmethod.BaseInputConnection;
+import android.view.inputmethod.ExtractedText;
+import android.view.inputmethod.ExtractedTextRequest;
+
+import com.calanti.androidnativekeyboardinputtest.bridge.ImeEditor;
+
+/** Forwards the IME's InputConnection calls straight into the {@link ImeEditor} model,
+ * which reports each one as a single edit to the bound TextField.
+ * @Author: calanti
+ */
+
+class AndroidInputConnection extends BaseInputConnection {
+
+    private final AndroidInputView view;
+    private final ImeEditor editor;
+
+    AndroidInputConnection(AndroidInputView view, ImeEditor editor) {
+        super(view, false);
+        this.view = view;
+        this.editor = editor;
+    }
+
+    @Override
+    public boolean performEditorAction(int actionCode) {
+        AndroidInputView.EditorActionListener listener = view.editorActionListener;
+        if (listener != null && listener.onEditorAction(actionCode)) return true;
+        return super.performEditorAction(actionCode);
+    }
+
+    @Override
+    public boolean commitText(CharSequence text, int newCursorPosition) {
+        editor.commitText(text, newCursorPosition);
+        return true;
+    }
+
+    @Override
+    public boolean setComposingText(CharSequence text, int newCursorPosition) {
+        editor.setComposingText(text, newCursorPosition);
+        return true;
+    }
+
+    @Override
+    public boolean setComposingRegion(int start, int end) {
+        editor.setComposingRegion(start, end);
+        return true;
+    }
+
+    @Override
+    public boolean finishComposingText() {
+        editor.finishComposingText();
+        return true;
+    }
+
+    @Override
+    public boolean deleteSurroundingText(int beforeLength, int afterLength) {
+        editor.deleteSurroundingText(beforeLength, afterLength);
+        return true;
+    }
+
+    @Override
+    public boolean setSelection(int start, int end) {
+        editor.setSelection(start, end);
+        return true;
+    }
+
+    @Override
+    public CharSequence getTextBeforeCursor(int n, int flags) {
+        return editor.getTextBeforeCursor(n);
+    }
+
+    @Override
+    public CharSequence getTextAfterCursor(int n, int flags) {
+        return editor.getTextAfterCursor(n);
+    }
+
+    @Override
+    public CharSequence getSelectedText(int flags) {
+        return editor.getSelectedText();
+    }
+
+    @Override
+    public int getCursorCapsMode(int reqModes) {
+        return TextUtils.getCapsMode(editor.getText(), editor.getSelectionStart(), reqModes);
+    }
+
+    @Override
+    public ExtractedText getExtractedText(ExtractedTextRequest request, int flags) {
+        //no extract UI (IME_FLAG_NO_EXTRACT_UI)
+        return null;
+    }
+
+    /** Some IMEs (and hardware-ish key injection) still send key events for delete/enter/characters and cursor moves.
+     * Those are applied to the editor, every other key (DPAD up/down, TAB, ...) takes the default path. */
+    @Override
+    public boolean sendKeyEvent(KeyEvent event) {
+        if (!translates(event)) return super.sendKeyEvent(event);
+        //the up event of a translated key has nothing left to do
+        if (event.getAction() != KeyEvent.ACTION_DOWN) return true;
+        CharSequence text = editor.getText();
+        int start = editor.getSelectionStart(), end = editor.getSelectionEnd();
+        switch (event.getKeyCode()) {
+            case KeyEvent.KEYCODE_DEL:
+                if (editor.getSelectedText() != null) editor.commitText("", 1);
+                else editor.deleteSurroundingText(start > 1 && Character.isLowSurrogate(text.charAt(start - 1)) ? 2 : 1, 0);
+                break;
+            case KeyEvent.KEYCODE_FORWARD_DEL:
+                if (editor.getSelectedText() != null) editor.commitText("", 1);
+                else editor.deleteSurroundingText(0, start + 1 < text.length() && Character.isHighSurrogate(text.charAt(start)) ? 2 : 1);
+                break;
+            case KeyEvent.KEYCODE_ENTER:
+                editor.commitText("\n", 1);
+                break;
+            case KeyEvent.KEYCODE_DPAD_LEFT:
+                int left = start != end ? Math.min(start, end) : start > 0 ? Character.offsetByCodePoints(text, start, -1) : 0;
+                editor.setSelection(left, left);
+                break;
+            case KeyEvent.KEYCODE_DPAD_RIGHT:
+                int right = start != end ? Math.max(start, end)
+                        : end < text.length() ? Character.offsetByCodePoints(text, end, 1) : end;
+                editor.setSelection(right, right);
+                break;
+            case KeyEvent.KEYCODE_MOVE_HOME:
+                editor.setSelection(0, 0);
+                break;
+            case KeyEvent.KEYCODE_MOVE_END:
+                editor.setSelection(text.length(), text.length());
+                break;
+            default:
+                editor.commitText(String.valueOf((char) event.getUnicodeChar()), 1);
+                break;
+        }
+        return true;
+    }
+
+    /** True for the keys {@link #sendKeyEvent(KeyEvent)} applies to the editor itself */
+    private static boolean translates(KeyEvent event) {
+        switch (event.getKeyCode()) {
+            case KeyEvent.KEYCODE_DEL:
+            case KeyEvent.KEYCODE_FORWARD_DEL:
+            case KeyEvent.KEYCODE_ENTER:
+            case KeyEvent.KEYCODE_DPAD_LEFT:
+            case KeyEvent.KEYCODE_DPAD_RIGHT:
+            case KeyEvent.KEYCODE_MOVE_HOME:
+            case KeyEvent.KEYCODE_MOVE_END:
+                return true;
+            case KeyEvent.KEYCODE_TAB:
+                return false;
+            default:
+                //printable characters only, ACTION_MULTIPLE and modifier keys have none
+                return event.getAction() != KeyEvent.ACTION_MULTIPLE && event.getUnicodeChar() != 0;
+        }
+    }
+}
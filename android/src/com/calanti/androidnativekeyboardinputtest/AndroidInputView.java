@@ -0,0 +1,58 @@
+package com.calanti.androidnativekeyboardinputtest;
+
+import android.content.Context;
+import android.view.View;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputConnection;
+
+import com.calanti.androidnativekeyboardinputtest.bridge.ImeEditor;
+
+/** A bare focusable View that the IME talks to directly through {@link AndroidInputConnection}.
+ * Unlike the hidden EditText it has no text layout, spans, spell-check or measure passes, the text only
+ * lives in the {@link ImeEditor} model.
+ * @Author: calanti
+ */
+
+class AndroidInputView extends View {
+
+    private final ImeEditor editor;
+
+    /** Receives the IME's action key (Next, Done, ...) */
+    interface EditorActionListener {
+        /** @return false to fall back to the default, an enter key event */
+        boolean onEditorAction(int actionCode);
+    }
+
+    EditorActionListener editorActionListener;
+
+    /** Set before focusing, read by the IME through onCreateInputConnection */
+    int inputType = EditorInfo.TYPE_CLASS_TEXT;
+    int imeOptions = EditorInfo.IME_ACTION_NONE;
+
+    AndroidInputView(Context context, ImeEditor editor) {
+        super(context);
+        this.editor = editor;
+        setFocusable(true);
+        setFocusableInTouchMode(true);
+    }
+
+    @Override
+    public boolean onCheckIsTextEditor() {
+        return true;
+    }
+
+    @Override
+    public InputConnection onCreateInputConnection(EditorInfo outAttrs) {
+        outAttrs.inputType = inputType;
+        outAttrs.imeOptions = imeOptions | EditorInfo.IME_FLAG_NO_FULLSCREEN | EditorInfo.IME_FLAG_NO_EXTRACT_UI;
+        outAttrs.initialSelStart = editor.getSelectionStart();
+        outAttrs.initialSelEnd = editor.getSelectionEnd();
+        return new AndroidInputConnection(this, editor);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        //never shown, nothing to measure
+        setMeasuredDimension(1, 1);
+    }
+}
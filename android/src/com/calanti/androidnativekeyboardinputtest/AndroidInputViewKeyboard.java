@@ -0,0 +1,295 @@
+package com.calanti.androidnativekeyboardinputtest;
+
+import android.app.Activity;
+import android.content.Context;
+import android.view.View;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputMethodManager;
+import android.widget.RelativeLayout;
+
+import com.badlogic.gdx.Gdx;
+import com.calanti.androidnativekeyboardinputtest.bridge.ImeEditor;
+import com.calanti.androidnativekeyboardinputtest.bridge.KeyboardLog;
+import com.calanti.androidnativekeyboardinputtest.bridge.KeyboardSession;
+import com.calanti.androidnativekeyboardinputtest.bridge.PendingTextCommands;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.AndroidKeyboardFeedbackInterface;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.AndroidTextInputInterface;
+import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextField;
+
+/** Alternative to {@link AndroidKeyboard} that skips the hidden EditText entirely.
+ * The IME edits an {@link ImeEditor} through a lightweight {@link AndroidInputView}, and every commitText,
+ * setComposingText or deleteSurroundingText is delivered to the bound TextField as one incremental edit
+ * (with the composing region), instead of a full copy of the text.
+ * @Author: calanti
+ */
+
+public class AndroidInputViewKeyboard implements AndroidTextInputInterface, ImeEditor.Listener {
+
+    private final Activity activity;
+    private final InputMethodManager inputMethodManager;
+
+    private final ImeEditor editor = new ImeEditor();
+    private final AndroidInputView inputView;
+
+    /** Text revision the editor content is currently based on (UI thread only) */
+    private int appliedRevision;
+
+    /** True from a completed bind until the keyboard is hidden, lost or suspended, while a new session can take the
+     * focused input view over without restarting the IME (UI thread only) */
+    private boolean keyboardOpen;
+
+    /** Optional, told about each keyboard request to publish a predicted height */
+    private KeyboardHeightDetector heightDetector;
+
+    /** Latest cursor/selection/text commands from gdx, applied at most once per UI frame. */
+    private final PendingTextCommands pendingCommands = new PendingTextCommands();
+    private final UiFrameTask commandFlush;
+
+    /** Field whose text the editor still holds after a suspend, with its revision, length and hash (UI thread only) */
+    private AndroidKeyboardFeedbackInterface retainedField;
+    private int retainedRevision, retainedLength, retainedHash;
+
+    /** Which libgdx TextField/TextArea the IME is bound to, and under which session id */
+    private final KeyboardSession session = new KeyboardSession();
+
+    public AndroidInputViewKeyboard(Activity activity){
+        this.activity = activity;
+        this.inputMethodManager = (InputMethodManager) activity.getSystemService(Context.INPUT_METHOD_SERVICE);
+
+        this.inputView = new AndroidInputView(activity, editor);
+        RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(1, 1);
+        inputView.setLayoutParams(params);
+
+        editor.setListener(this);
+        inputView.editorActionListener = new AndroidInputView.EditorActionListener() {
+            @Override
+            public boolean onEditorAction(int actionCode) {
+                return editorAction(actionCode);
+            }
+        };
+
+        this.commandFlush = new UiFrameTask() {
+            @Override
+            protected void onFrame() {
+                flushCommands();
+            }
+        };
+    }
+
+    AndroidInputView getForView(){
+        return this.inputView;
+    }
+
+    /** Measures the input view once on the UI thread, ahead of the first requestKeyboard. */
+    void prewarm(){
+        inputView.measure(View.MeasureSpec.makeMeasureSpec(1, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1, View.MeasureSpec.EXACTLY));
+    }
+
+    /** Called on the UI thread for every edit the IME makes */
+    @Override
+    public void onEdit(final int start, final int end, final CharSequence replacement, final int selectionStart,
+                       final int selectionEnd, final int composingStart, final int composingEnd) {
+        inputMethodManager.updateSelection(inputView, selectionStart, selectionEnd, composingStart, composingEnd);
+        KeyboardLog.debug("AKV: IME edit, start/end:", start, end, replacement);
+        KeyboardLog.trace(KeyboardLog.EVENT_TEXT_REPLACED, start, end, replacement);
+
+        KeyboardSession.State state = session.get();
+        if(state.phase != KeyboardSession.BOUND) return;
+        final int sessionId = state.id;
+
+        final String replacementText = replacement.toString();
+        final int revision = appliedRevision;
+        Gdx.app.postRunnable(new Runnable() {
+            @Override
+            public void run() {
+                AndroidKeyboardFeedbackInterface textField = session.target(sessionId);
+                if(textField == null){
+                    KeyboardLog.trace(KeyboardLog.EVENT_STALE_SESSION, sessionId, session.get().id);
+                    return;
+                }
+                textField.textReplaced(start, end, replacementText, selectionStart, selectionEnd,
+                        composingStart, composingEnd, revision);
+            }
+        });
+    }
+
+    /** Snapshots the field on the calling (GL) thread and goes straight to the UI thread. */
+    @Override
+    public void requestKeyboard(final AndroidKeyboardFeedbackInterface textField) {
+        final int sessionId = session.bind(textField);
+        pendingCommands.clear();
+        final String text = textField.getText();
+        final int cursorPosition = textField.getCursorPosition();
+        final int revision = textField.getTextRevision();
+        //Strings cache their hash, this is only computed once per text
+        final int textHash = text.hashCode();
+        activity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                KeyboardSession.State state = session.get();
+                if(state.id != sessionId || state.phase != KeyboardSession.BINDING) return;
+
+                CalTextField.TextFieldStyle style = textField.getStyle();
+                ImeConfig config = ImeConfig.of(style);
+                //focus moved to another field with the same keyboard, the IME connection can stay
+                boolean rebind = keyboardOpen && inputView.hasFocus()
+                        && inputView.inputType == config.inputType && inputView.imeOptions == config.imeOptions;
+                inputView.inputType = config.inputType;
+                inputView.imeOptions = config.imeOptions;
+                //resuming the field we suspended with the same text, the editor already holds it
+                boolean retained = retainedField == textField && retainedRevision == revision
+                        && retainedLength == text.length() && retainedHash == textHash;
+                retainedField = null;
+                if(retained) editor.select(cursorPosition, cursorPosition);
+                else editor.reset(text, cursorPosition, cursorPosition);
+                appliedRevision = revision;
+
+                if(rebind){
+                    KeyboardLog.debug("AKV: rebinding open keyboard, session:", sessionId);
+                    //an unexpected jump with no composing region makes the IME drop its state and re-read the
+                    //text around the cursor from the editor
+                    inputMethodManager.updateSelection(inputView, editor.getSelectionStart(), editor.getSelectionEnd(), -1, -1);
+                    inputMethodManager.showSoftInput(inputView, InputMethodManager.SHOW_FORCED);
+                } else {
+                    //let keyboard aware layout move before the IME has animated in
+                    if(heightDetector != null) heightDetector.keyboardRequested(KeyboardHeightCache.kindFor(style));
+
+                    inputView.requestFocus();
+                    inputMethodManager.restartInput(inputView);
+                    inputMethodManager.showSoftInput(inputView, InputMethodManager.SHOW_FORCED);
+                }
+                keyboardOpen = true;
+                if(session.bound(sessionId)) commandFlush.schedule();
+            }
+        });
+    }
+
+    void setKeyboardHeightDetector(KeyboardHeightDetector heightDetector){
+        this.heightDetector = heightDetector;
+    }
+
+    @Override
+    public boolean isHardwareKeyboardConnected() {
+        return HardwareKeyboard.isConnected(activity);
+    }
+
+    @Override
+    public void forceHideKeyboard() {
+        final int sessionId = session.unbind();
+        pendingCommands.clear();
+        activity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                keyboardOpen = false;
+                retainedField = null;
+                editor.reset("", 0, 0);
+                inputView.clearFocus();
+                inputMethodManager.hideSoftInputFromWindow(inputView.getWindowToken(), 0);
+                //a prediction the IME never confirmed goes with it, unless gdx already asked for the keyboard again
+                if(heightDetector != null && !session.isActive()) heightDetector.keyboardHidden();
+                session.unbound(sessionId);
+            }
+        });
+    }
+
+    @Override
+    public void suspendKeyboard() {
+        final AndroidKeyboardFeedbackInterface textField = session.get().target;
+        final int sessionId = session.unbind();
+        pendingCommands.clear();
+        activity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                keyboardOpen = false;
+                if(sessionId != -1 && textField != null){
+                    String text = editor.getText().toString();
+                    retainedField = textField;
+                    retainedRevision = appliedRevision;
+                    retainedLength = text.length();
+                    retainedHash = text.hashCode();
+                }
+                inputView.clearFocus();
+                inputMethodManager.hideSoftInputFromWindow(inputView.getWindowToken(), 0);
+                //a prediction the IME never confirmed goes with it, unless gdx already asked for the keyboard again
+                if(heightDetector != null && !session.isActive()) heightDetector.keyboardHidden();
+                session.unbound(sessionId);
+            }
+        });
+    }
+
+    @Override
+    public void keyboardHideDetected() {
+        final int sessionId = session.unbind();
+        //nothing bound (e.g. suspended), keep whatever the editor retained
+        if(sessionId == -1) return;
+        pendingCommands.clear();
+        activity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                keyboardOpen = false;
+                retainedField = null;
+                editor.reset("", 0, 0);
+                inputView.clearFocus();
+                session.unbound(sessionId);
+            }
+        });
+    }
+
+    @Override
+    public void setCursorPosition(int position) {
+        if(!session.isActive()) return;
+        setSelection(position, position);
+    }
+
+    @Override
+    public void setSelection(int start, int end) {
+        pendingCommands.setSelection(start, end);
+        commandFlush.schedule();
+    }
+
+    @Override
+    public void setText(CharSequence text, int cursorPosition, int revision) {
+        pendingCommands.setText(text, cursorPosition, revision);
+        commandFlush.schedule();
+    }
+
+    private void flushCommands(){
+        //keep them queued until the editor is set up, the bind reschedules the flush
+        if(session.get().phase != KeyboardSession.BOUND) return;
+        PendingTextCommands commands = pendingCommands;
+        if(!commands.take()) return;
+
+        if(commands.takenText != null){
+            //the field corrected its own text (filter, max length, stripped enter...), same binding and input type, so
+            //no restartInput: the updateSelection below tells the IME, which re-reads the text around the cursor
+            editor.sync(commands.takenText, commands.takenTextCursor, commands.takenTextCursor);
+            appliedRevision = commands.takenTextRevision;
+            commands.takenText = null;
+        }
+
+        if(commands.takenSelection){
+            editor.select(commands.takenSelectionStart, commands.takenSelectionEnd);
+        }
+
+        inputMethodManager.updateSelection(inputView, editor.getSelectionStart(), editor.getSelectionEnd(),
+                editor.getComposingStart(), editor.getComposingEnd());
+    }
+
+    /** UI thread, from the input connection's performEditorAction */
+    private boolean editorAction(int actionCode){
+        KeyboardSession.State state = session.get();
+        if(state.phase != KeyboardSession.BOUND || !ImeConfig.isEditorAction(actionCode)) return false;
+        final int sessionId = state.id;
+        final boolean next = actionCode == EditorInfo.IME_ACTION_NEXT;
+        KeyboardLog.trace(KeyboardLog.EVENT_EDITOR_ACTION, actionCode, sessionId);
+        Gdx.app.postRunnable(new Runnable() {
+            @Override
+            public void run() {
+                AndroidKeyboardFeedbackInterface textField = session.target(sessionId);
+                if(textField != null) textField.editorAction(next);
+            }
+        });
+        return true;
+    }
+}
@@ -3,17 +3,23 @@ package com.calanti.androidnativekeyboardinputtest;
 import android.app.Activity;
 import android.content.Context;
 import android.text.Editable;
-import android.text.InputType;
 import android.text.TextWatcher;
+import android.view.KeyEvent;
 import android.view.View;
+import android.view.inputmethod.BaseInputConnection;
+import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.EditText;
 import android.widget.RelativeLayout;
+import android.widget.TextView;
 
 import com.badlogic.gdx.Gdx;
+import com.calanti.androidnativekeyboardinputtest.bridge.KeyboardLog;
+import com.calanti.androidnativekeyboardinputtest.bridge.KeyboardSession;
+import com.calanti.androidnativekeyboardinputtest.bridge.PendingTextCommands;
+import com.calanti.androidnativekeyboardinputtest.bridge.TextWindow;
 import com.calanti.androidnativekeyboardinputtest.interfaces.android.AndroidKeyboardFeedbackInterface;
 import com.calanti.androidnativekeyboardinputtest.interfaces.android.AndroidTextInputInterface;
-import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextArea;
 import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextField;
 
 /** The class containing the hidden EditText and tools to manage data to/from libgdx core.
@@ -23,6 +29,7 @@ import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextFi
 public class AndroidKeyboard implements AndroidTextInputInterface {
 
     private final Activity activity;
+    private final InputMethodManager inputMethodManager;
 
     /** The Android EditText hidden offscreen with the keyboard focus. */
     private EditText hiddenEditText;
@@ -30,16 +37,69 @@ public class AndroidKeyboard implements AndroidTextInputInterface {
     /** The TextWatcher that listens to any text change on the hidden EditText */
     private TextWatcher hiddenEditTextTextWatcher;
 
+    /** Input type and IME options the EditText currently has, only changed when a style needs different ones since
+     * each change restarts the IME (UI thread only) */
+    private int appliedInputType = -1, appliedImeOptions = -1;
+
+    /** True from a completed bind until the keyboard is hidden, lost or suspended, while a new session can take the
+     * focused EditText over in place (UI thread only) */
+    private boolean keyboardOpen;
+
+    /** Suppresses the TextWatcher during our own writes to the EditText (UI thread only) */
     private boolean disableTextWatcher = true;
 
-    /** The libgdx TextField/TextArea to bind the EditText to */
-    private AndroidKeyboardFeedbackInterface keyboardFeedbackTextField;
+    /** Text revision the EditText content is currently based on (UI thread only).
+     * Sent with every change so the TextField can drop changes that crossed one of its own writes. */
+    private int appliedRevision;
+
+    /** Collects TextWatcher bursts (autocorrect, swype, voice) and forwards the net state once per UI frame */
+    private final UiFrameTask textChangeFlush;
+
+    /** Optional, told about each keyboard request to publish a predicted height */
+    private KeyboardHeightDetector heightDetector;
+
+    /** Latest cursor/selection/text commands from gdx, applied at most once per UI frame. */
+    private final PendingTextCommands pendingCommands = new PendingTextCommands();
+    private final UiFrameTask commandFlush;
+
+    /** If set, only this window of the text around the cursor is mirrored into the EditText (UI thread only) */
+    private TextWindow textWindow;
+
+    /** Field whose text the EditText still holds after a suspend, with its revision, length and hash (UI thread only) */
+    private AndroidKeyboardFeedbackInterface retainedField;
+    private int retainedRevision, retainedLength, retainedHash;
+
+    /** Which libgdx TextField/TextArea the EditText is bound to, and under which session id */
+    private final KeyboardSession session = new KeyboardSession();
 
     public AndroidKeyboard(Activity activity){
         this.activity = activity;
+        this.inputMethodManager = (InputMethodManager) activity.getSystemService(Context.INPUT_METHOD_SERVICE);
+
+        this.textChangeFlush = new UiFrameTask() {
+            @Override
+            protected void onFrame() {
+                if(disableTextWatcher) return;
+                KeyboardSession.State state = session.get();
+                if(state.phase != KeyboardSession.BOUND) return;
+                if(textWindow != null){
+                    windowEdited(state.id, true);
+                    return;
+                }
+                hiddenEditTextTextChanged(hiddenEditText.getText().toString(),
+                        hiddenEditText.getSelectionStart(), hiddenEditText.getSelectionEnd(), appliedRevision, state.id);
+            }
+        };
 
         this.hiddenEditText = new EditText(activity);
 
+        this.commandFlush = new UiFrameTask() {
+            @Override
+            protected void onFrame() {
+                flushCommands();
+            }
+        };
+
         //put the EditText in a silly position so it is offscreen
         RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(RelativeLayout.LayoutParams.MATCH_PARENT,
                 RelativeLayout.LayoutParams.WRAP_CONTENT);
@@ -66,7 +126,8 @@ public class AndroidKeyboard implements AndroidTextInputInterface {
             @Override
             public void onTextChanged(CharSequence charSequence, int i, int i1, int i2) {
                 if(disableTextWatcher) return;
-                hiddenEditTextTextChanged(charSequence, hiddenEditText.getSelectionStart(), hiddenEditText.getSelectionEnd());
+                //intermediate states within a frame are never seen, only send the latest one
+                textChangeFlush.schedule();
             }
 
             @Override
@@ -74,157 +135,383 @@ public class AndroidKeyboard implements AndroidTextInputInterface {
         };
 
         hiddenEditText.addTextChangedListener(hiddenEditTextTextWatcher);
+
+        //Next/Done go straight to the field instead of arriving as a newline to strip
+        hiddenEditText.setOnEditorActionListener(new TextView.OnEditorActionListener() {
+            @Override
+            public boolean onEditorAction(TextView textView, int actionId, KeyEvent keyEvent) {
+                return editorAction(actionId);
+            }
+        });
     }
 
     EditText getForView(){
         return this.hiddenEditText;
     }
 
+    /** Does the one-off work of the first requestKeyboard ahead of time, on the UI thread: measures the EditText
+     * and builds its text layout and input type machinery once. */
+    void prewarm(){
+        //too late, a field is already using it
+        if(session.isActive()) return;
+        KeyboardLog.debug("AK: prewarm");
+        applyImeConfig(ImeConfig.of(prewarmStyle));
+        hiddenEditText.setText("prewarm");
+        hiddenEditText.setSelection(hiddenEditText.length());
+        hiddenEditText.setText("");
+        int width = activity.getResources().getDisplayMetrics().widthPixels;
+        hiddenEditText.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.AT_MOST),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+    }
+
+    /** Default style, resolves the most common input type ahead of the first request */
+    private static final CalTextField.TextFieldStyle prewarmStyle = new CalTextField.TextFieldStyle();
+
+    /** @return true if the EditText had to change, which restarts the IME */
+    private boolean applyImeConfig(ImeConfig config){
+        boolean changed = false;
+        if(config.inputType != appliedInputType){
+            hiddenEditText.setInputType(config.inputType);
+            appliedInputType = config.inputType;
+            changed = true;
+        }
+        if(config.imeOptions != appliedImeOptions){
+            hiddenEditText.setImeOptions(config.imeOptions);
+            appliedImeOptions = config.imeOptions;
+            changed = true;
+        }
+        return changed;
+    }
+
+    /** Swaps the whole content in place. Unlike EditText.setText this does not restart the IME, the composing region
+     * of the previous content is dropped and the IME hears about the new selection as usual. */
+    private void replaceText(CharSequence text){
+        Editable editable = hiddenEditText.getText();
+        BaseInputConnection.removeComposingSpans(editable);
+        editable.replace(0, editable.length(), text);
+    }
+
+    /** UI thread, from the EditText's OnEditorActionListener */
+    private boolean editorAction(int actionId){
+        KeyboardSession.State state = session.get();
+        if(state.phase != KeyboardSession.BOUND || !ImeConfig.isEditorAction(actionId)) return false;
+        final int sessionId = state.id;
+        final boolean next = actionId == EditorInfo.IME_ACTION_NEXT;
+        KeyboardLog.trace(KeyboardLog.EVENT_EDITOR_ACTION, actionId, sessionId);
+        Gdx.app.postRunnable(new Runnable() {
+            @Override
+            public void run() {
+                AndroidKeyboardFeedbackInterface textField = session.target(sessionId);
+                if(textField != null) textField.editorAction(next);
+            }
+        });
+        return true;
+    }
+
     private void showKeyboard(EditText target){
         if (target == null) return;
-        InputMethodManager imm = (InputMethodManager) activity.getSystemService(Context.INPUT_METHOD_SERVICE);
-        imm.showSoftInput(target, InputMethodManager.SHOW_FORCED);
+        inputMethodManager.showSoftInput(target, InputMethodManager.SHOW_FORCED);
     }
 
-    private void hiddenEditTextTextChanged(final CharSequence text, final int cursorPosition, final int selectionEnd){
-        System.out.println("AK: EditText change: cursor: "+cursorPosition+" selectionEnd: "+selectionEnd+" text: "+text);
-
-        //just in case, probably shouldn't happen though
-        if(keyboardFeedbackTextField == null) return;
+    private void hiddenEditTextTextChanged(final CharSequence text, final int cursorPosition, final int selectionEnd,
+                                           final int revision, final int sessionId){
+        KeyboardLog.debug("AK: EditText change, cursor/selectionEnd:", cursorPosition, selectionEnd, text);
+        KeyboardLog.trace(KeyboardLog.EVENT_TEXT_CHANGED, cursorPosition, selectionEnd, text);
 
         //sync with the gdx thread
         Gdx.app.postRunnable(new Runnable() {
             @Override
             public void run() {
+                //focus moved on (or the keyboard was hidden) while this was in flight, it belongs to another field
+                AndroidKeyboardFeedbackInterface textField = session.target(sessionId);
+                if(textField == null){
+                    KeyboardLog.trace(KeyboardLog.EVENT_STALE_SESSION, sessionId, session.get().id);
+                    return;
+                }
                 //math.max needed because my asus keyboard also deletes from cursor point 0, which creates negative cursor pos..
-                keyboardFeedbackTextField.textChanged(text, Math.max(0,cursorPosition), Math.max(0,selectionEnd));
+                textField.textChanged(text, Math.max(0,cursorPosition), Math.max(0,selectionEnd), revision);
             }
         });
     }
 
+    /** Sends what changed in the window as one replacement in document offsets.
+     * @param followCursor move the window if the cursor got close to its edge. Waits for the IME to finish composing,
+     * moving commits the word. */
+    private void windowEdited(int sessionId, boolean followCursor){
+        TextWindow window = textWindow;
+        Editable editable = hiddenEditText.getText();
+        int start = window.getStart();
+        int cursorPosition = start + Math.max(0, hiddenEditText.getSelectionStart());
+        int selectionEnd = start + Math.max(0, hiddenEditText.getSelectionEnd());
+        int composingStart = BaseInputConnection.getComposingSpanStart(editable);
+        int composingEnd = BaseInputConnection.getComposingSpanEnd(editable);
+        if(window.edited(editable.toString())){
+            hiddenEditTextTextReplaced(window.editStart, window.editEnd, window.editReplacement, cursorPosition, selectionEnd,
+                    composingStart < 0 ? -1 : start + composingStart, composingEnd < 0 ? -1 : start + composingEnd,
+                    appliedRevision, sessionId);
+        }
+        if(followCursor && composingStart < 0 && window.needsSlide(selectionEnd)) slideWindow(cursorPosition, selectionEnd);
+    }
+
+    /** Re-cuts the window around the selection, the document and its revision stay the same */
+    private void slideWindow(int selectionStart, int selectionEnd){
+        TextWindow window = textWindow;
+        String text = window.slide(selectionStart, selectionEnd);
+        KeyboardLog.debug("AK: window slid, start/document length:", window.getStart(), window.documentLength());
+        KeyboardLog.trace(KeyboardLog.EVENT_WINDOW_SLID, window.getStart(), window.documentLength());
+        boolean watcherDisabled = disableTextWatcher;
+        disableTextWatcher = true;
+        replaceText(text);
+        hiddenEditText.setSelection(window.toWindow(selectionStart), window.toWindow(selectionEnd));
+        disableTextWatcher = watcherDisabled;
+    }
+
+    private void hiddenEditTextTextReplaced(final int start, final int end, final String replacement, final int cursorPosition,
+                                            final int selectionEnd, final int composingStart, final int composingEnd,
+                                            final int revision, final int sessionId){
+        KeyboardLog.debug("AK: window edit, start/end:", start, end, replacement);
+        KeyboardLog.trace(KeyboardLog.EVENT_TEXT_REPLACED, start, end, replacement);
+
+        Gdx.app.postRunnable(new Runnable() {
+            @Override
+            public void run() {
+                AndroidKeyboardFeedbackInterface textField = session.target(sessionId);
+                if(textField == null){
+                    KeyboardLog.trace(KeyboardLog.EVENT_STALE_SESSION, sessionId, session.get().id);
+                    return;
+                }
+                textField.textReplaced(start, end, replacement, cursorPosition, selectionEnd, composingStart, composingEnd, revision);
+            }
+        });
+    }
+
+    /** Mirror only a window of about this many chars around the cursor into the EditText, instead of the whole text,
+     * so keystrokes in long documents cost as little as in short ones. Edits then come back as
+     * {@link AndroidKeyboardFeedbackInterface#textReplaced} in document offsets, and the window follows the cursor.
+     * The IME only sees the window, which is plenty for suggestions and autocorrect.
+     * UI thread, before the first requestKeyboard.
+     * @param length window length in chars, 0 (the default) mirrors the whole text */
+    public void setMirrorWindow(int length){
+        textWindow = length > 0 ? new TextWindow(length) : null;
+    }
+
+    void setKeyboardHeightDetector(KeyboardHeightDetector heightDetector){
+        this.heightDetector = heightDetector;
+    }
+
+    @Override
+    public boolean isHardwareKeyboardConnected() {
+        return HardwareKeyboard.isConnected(activity);
+    }
+
     @Override
     public void forceHideKeyboard() {
-        System.out.println("AK: fired forceHideKeyboard");
-        this.keyboardFeedbackTextField = null;
+        KeyboardLog.debug("AK: fired forceHideKeyboard");
+        final int sessionId = session.unbind();
+        KeyboardLog.trace(KeyboardLog.EVENT_FORCE_HIDE, sessionId, 0);
+        pendingCommands.clear();
         activity.runOnUiThread(new Runnable() {
             @Override
             public void run() {
                 disableTextWatcher = true;
+                keyboardOpen = false;
+                textChangeFlush.cancel();
+                retainedField = null;
                 hiddenEditText.setSelection(0);
                 hiddenEditText.setText("");
                 hiddenEditText.clearFocus();
 
-                InputMethodManager imm = (InputMethodManager) activity.getSystemService(Context.INPUT_METHOD_SERVICE);
-
-                imm.hideSoftInputFromWindow(hiddenEditText.getWindowToken(), 0);
+                inputMethodManager.hideSoftInputFromWindow(hiddenEditText.getWindowToken(), 0);
+                //a prediction the IME never confirmed goes with it, unless gdx already asked for the keyboard again
+                if(heightDetector != null && !session.isActive()) heightDetector.keyboardHidden();
+                session.unbound(sessionId);
             }
         });
     }
 
     @Override
     public void keyboardHideDetected() {
-        System.out.println("AK: fired keyboardHideDetected");
-        this.keyboardFeedbackTextField = null;
+        KeyboardLog.debug("AK: fired keyboardHideDetected");
+        final int sessionId = session.unbind();
+        KeyboardLog.trace(KeyboardLog.EVENT_HIDE_DETECTED, sessionId, 0);
+        //nothing bound (e.g. suspended), keep whatever the EditText retained
+        if(sessionId == -1) return;
+        pendingCommands.clear();
         activity.runOnUiThread(new Runnable() {
             @Override
             public void run() {
                 disableTextWatcher = true;
+                keyboardOpen = false;
+                textChangeFlush.cancel();
+                retainedField = null;
                 hiddenEditText.setSelection(0);
                 hiddenEditText.setText("");
                 hiddenEditText.clearFocus();
+                session.unbound(sessionId);
             }
         });
     }
 
     @Override
-    public void requestKeyboard(final AndroidKeyboardFeedbackInterface textField) {
-        //allow the TextField to configure itself
-        disableTextWatcher = true;
-        this.keyboardFeedbackTextField = null;
-        Gdx.app.postRunnable(new Runnable() {
+    public void suspendKeyboard() {
+        KeyboardLog.debug("AK: fired suspendKeyboard");
+        final AndroidKeyboardFeedbackInterface textField = session.get().target;
+        final int sessionId = session.unbind();
+        pendingCommands.clear();
+        activity.runOnUiThread(new Runnable() {
             @Override
             public void run() {
-                requestKeyboard(textField, textField.getText(), textField.getCursorPosition());
+                disableTextWatcher = true;
+                keyboardOpen = false;
+                //anything still pending is lost on the gdx side, the hash check below catches that
+                textChangeFlush.cancel();
+                //a window is cheap to copy again, and only valid with the document it was cut from
+                if(sessionId != -1 && textField != null && textWindow == null){
+                    String text = hiddenEditText.getText().toString();
+                    retainedField = textField;
+                    retainedRevision = appliedRevision;
+                    retainedLength = text.length();
+                    retainedHash = text.hashCode();
+                }
+                hiddenEditText.clearFocus();
+                inputMethodManager.hideSoftInputFromWindow(hiddenEditText.getWindowToken(), 0);
+                //a prediction the IME never confirmed goes with it, unless gdx already asked for the keyboard again
+                if(heightDetector != null && !session.isActive()) heightDetector.keyboardHidden();
+                session.unbound(sessionId);
             }
         });
     }
 
-    private void requestKeyboard(final AndroidKeyboardFeedbackInterface textField, final CharSequence currentText, final int cursorPosition) {
-        System.out.println("AK: fired requestKeyboard, cursor position: "+cursorPosition);
+    /** Snapshots the field on the calling (GL) thread and goes straight to the UI thread. Whatever the field changes
+     * afterwards reaches the EditText as a normal command once the bind is done. */
+    @Override
+    public void requestKeyboard(final AndroidKeyboardFeedbackInterface textField) {
+        //from here on, events of the previous session are dropped
+        final int sessionId = session.bind(textField);
+        pendingCommands.clear();
+        final String currentText = textField.getText();
+        //Strings cache their hash, this is only computed once per text
+        final int textHash = currentText.hashCode();
+        final int cursorPosition = textField.getCursorPosition();
+        final int revision = textField.getTextRevision();
+        KeyboardLog.debug("AK: fired requestKeyboard, cursor position/revision:", cursorPosition, revision);
+        KeyboardLog.trace(KeyboardLog.EVENT_REQUEST_KEYBOARD, cursorPosition, revision);
         activity.runOnUiThread(new Runnable() {
             @Override
             public void run() {
-                //set the keyboard type depending on TextField/TextAreaStyle
+                //superseded by a newer request or already unbound, whoever did that sets the EditText up
+                KeyboardSession.State state = session.get();
+                if(state.id != sessionId || state.phase != KeyboardSession.BINDING) return;
 
-                CalTextField.TextFieldStyle style = textField.getStyle();
+                disableTextWatcher = true;
+                //a burst of the previous field still waiting for the frame, gdx drops it anyway
+                textChangeFlush.cancel();
 
-                hiddenEditText.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_CAP_SENTENCES);
+                //set the keyboard type depending on TextField/TextAreaStyle, only touching the EditText if it differs
+                CalTextField.TextFieldStyle style = textField.getStyle();
+                boolean configChanged = applyImeConfig(ImeConfig.of(style));
+
+                //resuming the field we suspended with the same text, the EditText already holds it
+                boolean retained = retainedField == textField && retainedRevision == revision
+                        && retainedLength == currentText.length() && retainedHash == textHash;
+                retainedField = null;
+                CharSequence mirroredText = currentText;
+                int mirroredCursor = cursorPosition;
+                if(textWindow != null){
+                    mirroredText = textWindow.reset(currentText, cursorPosition);
+                    mirroredCursor = textWindow.toWindow(cursorPosition);
+                }
 
-                if(style.androidKeyboardNumericalOnly){
-                    hiddenEditText.setInputType(InputType.TYPE_CLASS_NUMBER);
+                if(keyboardOpen && !configChanged && hiddenEditText.hasFocus()){
+                    //focus moved to another field with the same keyboard: keep the IME connection and the keyboard up,
+                    //refocusing would flicker it and restart the IME
+                    KeyboardLog.debug("AK: rebinding open keyboard, session:", sessionId);
+                    if(!retained) replaceText(mirroredText);
+                    //no-op if it is still up, brings it back if it was dismissed and the hide is not detected yet
+                    showKeyboard(hiddenEditText);
                 } else {
-                    if(style.androidKeyboardAutoCorrect) {
-                        hiddenEditText.setInputType(hiddenEditText.getInputType() | InputType.TYPE_TEXT_FLAG_AUTO_CORRECT);
-                    }
-
-                    if(!style.androidKeyboardTextSuggestions) {
-                        hiddenEditText.setInputType(hiddenEditText.getInputType() | InputType.TYPE_TEXT_FLAG_NO_SUGGESTIONS);
-                    }
-
-                    if(style instanceof CalTextArea.TextAreaStyle){
-                        if(((CalTextArea.TextAreaStyle) style).androidKeyboardCarriageReturn){
-                            hiddenEditText.setInputType(hiddenEditText.getInputType() |
-                                    InputType.TYPE_TEXT_FLAG_MULTI_LINE | InputType.TYPE_TEXT_FLAG_IME_MULTI_LINE);
-                        }
-                    }
-                }
+                    //let keyboard aware layout move before the IME has animated in
+                    if(heightDetector != null) heightDetector.keyboardRequested(KeyboardHeightCache.kindFor(style));
 
-                hiddenEditText.clearFocus();
-                hiddenEditText.requestFocus();
-                hiddenEditText.setText(currentText);
-                hiddenEditText.setSelection(cursorPosition);
-                disableTextWatcher = false;
+                    hiddenEditText.clearFocus();
+                    hiddenEditText.requestFocus();
+                    if(!retained) hiddenEditText.setText(mirroredText);
+                }
+                hiddenEditText.setSelection(clampToText(mirroredCursor));
+                appliedRevision = revision;
+                keyboardOpen = true;
+                if(session.bound(sessionId)){
+                    disableTextWatcher = false;
+                    //commands gdx sent while we were binding
+                    commandFlush.schedule();
+                }
             }
         });
-        this.keyboardFeedbackTextField = textField;
     }
 
     @Override
     public void setCursorPosition(final int position) {
-        if(this.keyboardFeedbackTextField == null) return;
-        System.out.println("AK: fired setCursorPosition at: "+position);
-        activity.runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                hiddenEditText.setSelection(position);
-            }
-        });
+        if(!session.isActive()) return;
+        setSelection(position, position);
     }
 
     @Override
     public void setSelection(final int start, final int end) {
-        System.out.println("AK: fired setSelection start: "+start+" end: "+end);
-        activity.runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                System.out.println("AK: set selection: "+start+" to "+end);
-                hiddenEditText.setSelection(start, end);
-            }
-        });
+        pendingCommands.setSelection(start, end);
+        commandFlush.schedule();
     }
 
     @Override
-    public void setText(final CharSequence text, final int cursorPosition) {
-        System.out.println("AK: fired setText pos: "+cursorPosition+" text: "+text);
-        activity.runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                disableTextWatcher = true;
-                hiddenEditText.setText(text);
-                hiddenEditText.setSelection(Math.max(0, cursorPosition));
-                disableTextWatcher = false;
-                hiddenEditTextTextChanged(text, cursorPosition, cursorPosition);
+    public void setText(final CharSequence text, final int cursorPosition, final int revision) {
+        pendingCommands.setText(text, cursorPosition, revision);
+        commandFlush.schedule();
+    }
+
+    /** Applies the latest queued text and selection to the EditText, text first so later cursor updates win. */
+    private void flushCommands(){
+        //keep them queued until the EditText is set up, the bind reschedules the flush
+        if(session.get().phase != KeyboardSession.BOUND) return;
+        PendingTextCommands commands = pendingCommands;
+        if(!commands.take()) return;
+
+        if(commands.takenText != null){
+            KeyboardLog.debug("AK: flush setText, cursor/revision:", commands.takenTextCursor, commands.takenTextRevision, commands.takenText);
+            KeyboardLog.trace(KeyboardLog.EVENT_SET_TEXT, commands.takenTextCursor, commands.takenTextRevision, commands.takenText);
+            disableTextWatcher = true;
+            textChangeFlush.cancel();
+            if(textWindow != null){
+                hiddenEditText.setText(textWindow.reset(commands.takenText.toString(), commands.takenTextCursor));
+                hiddenEditText.setSelection(textWindow.toWindow(commands.takenTextCursor));
+            } else {
+                hiddenEditText.setText(commands.takenText);
+                hiddenEditText.setSelection(clampToText(commands.takenTextCursor));
             }
-        });
+            //the TextField already holds this text, so no echo back - later changes just carry the new revision
+            appliedRevision = commands.takenTextRevision;
+            disableTextWatcher = false;
+            commands.takenText = null;
+        }
+
+        if(commands.takenSelection){
+            KeyboardLog.debug("AK: flush setSelection, start/end:", commands.takenSelectionStart, commands.takenSelectionEnd);
+            KeyboardLog.trace(KeyboardLog.EVENT_SET_SELECTION, commands.takenSelectionStart, commands.takenSelectionEnd);
+            TextWindow window = textWindow;
+            if(window == null){
+                hiddenEditText.setSelection(clampToText(commands.takenSelectionStart), clampToText(commands.takenSelectionEnd));
+            } else if(window.needsSlide(commands.takenSelectionEnd) || (!window.contains(commands.takenSelectionStart)
+                    && Math.abs(commands.takenSelectionEnd - commands.takenSelectionStart) <= window.length)){
+                //the selection left the window (one longer than the window only follows its cursor end, the start stays
+                //clamped): hand over what was typed in the old window before cutting a new one
+                textChangeFlush.cancel();
+                windowEdited(session.get().id, false);
+                slideWindow(commands.takenSelectionStart, commands.takenSelectionEnd);
+            } else {
+                hiddenEditText.setSelection(window.toWindow(commands.takenSelectionStart), window.toWindow(commands.takenSelectionEnd));
+            }
+        }
+    }
+
+    private int clampToText(int position){
+        return Math.max(0, Math.min(position, hiddenEditText.length()));
     }
 }
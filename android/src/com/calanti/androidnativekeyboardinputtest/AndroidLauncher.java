@@ -2,22 +2,41 @@ package com.calanti.androidnativekeyboardinputtest;
 
 import android.graphics.Rect;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.view.View;
 import android.view.Window;
 import android.view.WindowManager;
 import android.widget.RelativeLayout;
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.backends.android.AndroidApplication;
 import com.badlogic.gdx.backends.android.AndroidApplicationConfiguration;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.AndroidTextInputInterface;
 
 public class AndroidLauncher extends AndroidApplication {
 
-	/** Used for visible view size change detection */
-	private View rootView;
+	/** Use the lightweight InputConnection view instead of the hidden EditText (see AndroidInputViewKeyboard) */
+	private static final boolean USE_INPUT_CONNECTION_VIEW = false;
+
+	/** Warm up the keyboard bridge and font layout when the UI thread first goes idle, so the first focus of a TextField
+	 * is as quick as the later ones. Off by default, costs a few ms of idle time after startup. */
+	private static final boolean PREWARM_INPUT = false;
+
+	/** Mirror only this many chars around the cursor into the hidden EditText, for TextAreas holding long documents.
+	 * 0 mirrors the whole text (see AndroidKeyboard#setMirrorWindow) */
+	private static final int EDIT_TEXT_WINDOW = 0;
+
+	/** Used for visible view size change and keyboard height detection */
 	private AndroidVisibleView androidVisibleView;
-	private int visibleWidth, visibleHeight;
+	private KeyboardHeightDetector keyboardHeightDetector;
 
-	private AndroidKeyboard androidKeyboard;
+	private AndroidTextInputInterface androidKeyboard;
+	private AndroidNativeKeyboardInputTest game;
+	private View androidKeyboardView;
+
+	/** Saved instance state key of the focused field's KeyboardSnapshot */
+	private static final String KEYBOARD_SNAPSHOT = "keyboardSnapshot";
 
 	@Override
 	protected void onCreate (Bundle savedInstanceState) {
@@ -31,31 +50,26 @@ public class AndroidLauncher extends AndroidApplication {
 		getWindow().setFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN, WindowManager.LayoutParams.FLAG_FULLSCREEN);
 		getWindow().clearFlags(WindowManager.LayoutParams.FLAG_FORCE_NOT_FULLSCREEN);
 
-		//initialise Android Keyboard / EditText methods
-		androidKeyboard = new AndroidKeyboard(this);
-
-		//set up the visible view
-		rootView = this.getWindow().getDecorView().getRootView();
+		//set up the visible view and keyboard height detection
+		View rootView = this.getWindow().getDecorView().getRootView();
 		Rect rect = new Rect();
 		rootView.getWindowVisibleDisplayFrame(rect);
-		visibleWidth = rect.width();
-		visibleHeight = rect.height();
-		androidVisibleView = new AndroidVisibleView(visibleWidth, visibleHeight);
+		androidVisibleView = new AndroidVisibleView(rect.width(), rect.height());
+		keyboardHeightDetector = new KeyboardHeightDetector(rootView, androidVisibleView, new KeyboardHeightCache(this));
 
-		//this shifts min api to 11
-		rootView.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
-			@Override
-			public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
-				Rect rect = new Rect();
-				rootView.getWindowVisibleDisplayFrame(rect);
-
-				if (!(visibleWidth == rect.width() && visibleHeight == rect.height())) {
-					visibleWidth = rect.width();
-					visibleHeight = rect.height();
-					androidVisibleView.onSizeChange(visibleWidth, visibleHeight);
-				}
-			}
-		});
+		//initialise Android Keyboard / EditText methods
+		if(USE_INPUT_CONNECTION_VIEW){
+			AndroidInputViewKeyboard inputViewKeyboard = new AndroidInputViewKeyboard(this);
+			androidKeyboard = inputViewKeyboard;
+			androidKeyboardView = inputViewKeyboard.getForView();
+			inputViewKeyboard.setKeyboardHeightDetector(keyboardHeightDetector);
+		} else {
+			AndroidKeyboard editTextKeyboard = new AndroidKeyboard(this);
+			androidKeyboard = editTextKeyboard;
+			androidKeyboardView = editTextKeyboard.getForView();
+			editTextKeyboard.setKeyboardHeightDetector(keyboardHeightDetector);
+			editTextKeyboard.setMirrorWindow(EDIT_TEXT_WINDOW);
+		}
 
 		//init application bridge
 		ApplicationBundle applicationBundle = new ApplicationBundle(androidVisibleView, androidKeyboard);
@@ -63,13 +77,58 @@ public class AndroidLauncher extends AndroidApplication {
 		AndroidApplicationConfiguration config = new AndroidApplicationConfiguration();
 
 		//get the main gdx view
-		View gdxView = initializeForView(new AndroidNativeKeyboardInputTest(applicationBundle), config);
+		game = new AndroidNativeKeyboardInputTest(applicationBundle);
+		if(savedInstanceState != null){
+			byte[] snapshot = savedInstanceState.getByteArray(KEYBOARD_SNAPSHOT);
+			if(snapshot != null) game.restoreKeyboardState(snapshot);
+		}
+		View gdxView = initializeForView(game, config);
 
 		//combine
 		mainLayout.addView(gdxView);
-		mainLayout.addView(androidKeyboard.getForView());
+		mainLayout.addView(androidKeyboardView);
 
 		setContentView(mainLayout);
+
+		if(PREWARM_INPUT){
+			Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+				@Override
+				public boolean queueIdle() {
+					prewarmInput();
+					return false;
+				}
+			});
+		}
+	}
+
+	private void prewarmInput() {
+		if(androidKeyboard instanceof AndroidKeyboard) ((AndroidKeyboard) androidKeyboard).prewarm();
+		else if(androidKeyboard instanceof AndroidInputViewKeyboard) ((AndroidInputViewKeyboard) androidKeyboard).prewarm();
+
+		//the font lives on the gdx thread
+		Gdx.app.postRunnable(new Runnable() {
+			@Override
+			public void run() {
+				game.prewarm();
+			}
+		});
+	}
+
+	/** Usually runs after onPause, by then the game has paused on the GL thread and snapshotted the focused field.
+	 * If the platform calls it before onPause there is nothing to save yet and the next instance starts unfocused */
+	@Override
+	protected void onSaveInstanceState(Bundle outState) {
+		super.onSaveInstanceState(outState);
+		byte[] snapshot = game != null ? game.saveKeyboardState() : null;
+		if(snapshot != null) outState.putByteArray(KEYBOARD_SNAPSHOT, snapshot);
 	}
 
+	/** API 14+, trims the text fields' render data; offscreen ones only while we are still showing.
+	 * In the background the GL thread is paused, the game then trims right here on the UI thread */
+	@Override
+	public void onTrimMemory(int level) {
+		super.onTrimMemory(level);
+		if(level < TRIM_MEMORY_RUNNING_LOW || game == null) return;
+		game.trimMemory(level >= TRIM_MEMORY_UI_HIDDEN);
+	}
 }
@@ -1,5 +1,7 @@
 package com.calanti.androidnativekeyboardinputtest;
 
+import com.calanti.androidnativekeyboardinputtest.bridge.VisibleViewDispatcher;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.KeyboardHeightListener;
 import com.calanti.androidnativekeyboardinputtest.interfaces.android.VisibleView;
 import com.calanti.androidnativekeyboardinputtest.interfaces.android.VisibleViewSizeChangeListener;
 
@@ -9,34 +11,55 @@ import com.calanti.androidnativekeyboardinputtest.interfaces.android.VisibleView
 
 public class AndroidVisibleView implements VisibleView {
 
-    private VisibleViewSizeChangeListener visibleViewSizeChangeListener;
-
-    private float screenWidth, screenHeight;
+    /** Hands the UI thread layout results over to the gdx thread */
+    private final VisibleViewDispatcher dispatcher;
 
     public AndroidVisibleView(float screenWidth, float screenHeight) {
-        this.screenWidth = screenWidth;
-        this.screenHeight = screenHeight;
+        this.dispatcher = new VisibleViewDispatcher(screenWidth, screenHeight);
+    }
+
+    @Override
+    public void addListener(VisibleViewSizeChangeListener sizeChangeListener) {
+        dispatcher.addListener(sizeChangeListener);
+    }
+
+    @Override
+    public void removeListener(VisibleViewSizeChangeListener sizeChangeListener) {
+        dispatcher.removeListener(sizeChangeListener);
+    }
+
+    @Override
+    public void addKeyboardHeightListener(KeyboardHeightListener keyboardHeightListener) {
+        dispatcher.addKeyboardHeightListener(keyboardHeightListener);
     }
 
     @Override
-    public void setListener(VisibleViewSizeChangeListener sizeChangeListener) {
-        this.visibleViewSizeChangeListener = sizeChangeListener;
+    public void removeKeyboardHeightListener(KeyboardHeightListener keyboardHeightListener) {
+        dispatcher.removeKeyboardHeightListener(keyboardHeightListener);
     }
 
     @Override
     public float getWidth() {
-        return this.screenWidth;
+        return dispatcher.getWidth();
     }
 
     @Override
     public float getHeight() {
-        return this.screenHeight;
+        return dispatcher.getHeight();
+    }
+
+    @Override
+    public float getKeyboardHeight() {
+        return dispatcher.getKeyboardHeight();
     }
 
     @Override
     public void onSizeChange(float width, float height) {
-        this.screenHeight = height;
-        this.screenWidth = width;
-        if(visibleViewSizeChangeListener != null) visibleViewSizeChangeListener.onSizeChange(width, height);
+        dispatcher.sizeChanged(width, height);
+    }
+
+    @Override
+    public void onKeyboardHeightChange(float keyboardHeight, long timeMillis) {
+        dispatcher.keyboardHeightChanged(keyboardHeight, timeMillis);
     }
 }
@@ -0,0 +1,20 @@
+package com.calanti.androidnativekeyboardinputtest;
+
+import android.content.Context;
+import android.content.res.Configuration;
+
+/** Physical (Bluetooth/USB/dock) keyboard detection.
+ * @Author: calanti
+ */
+
+final class HardwareKeyboard {
+
+    private HardwareKeyboard(){ }
+
+    /** True if a physical keyboard with keys is attached and not hidden (e.g. folded away). */
+    static boolean isConnected(Context context){
+        Configuration configuration = context.getResources().getConfiguration();
+        return configuration.keyboard != Configuration.KEYBOARD_NOKEYS
+                && configuration.hardKeyboardHidden == Configuration.HARDKEYBOARDHIDDEN_NO;
+    }
+}
@@ -0,0 +1,79 @@
+package com.calanti.androidnativekeyboardinputtest;
+
+import android.text.InputType;
+import android.view.inputmethod.EditorInfo;
+
+import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextArea;
+import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextField;
+
+import java.util.WeakHashMap;
+
+/** Input type and IME options of a TextFieldStyle, resolved once per style and shared by both keyboard implementations,
+ * so binding a field is a map lookup plus a compare against what the view already has.
+ * A style's android flags are checked on every lookup, a style changed after its first use resolves again. UI thread only.
+ * @Author: calanti
+ */
+
+final class ImeConfig {
+
+    private static final WeakHashMap<CalTextField.TextFieldStyle, ImeConfig> cache =
+            new WeakHashMap<CalTextField.TextFieldStyle, ImeConfig>();
+
+    final int inputType;
+    final int imeOptions;
+    /** The style flags this was resolved from */
+    private final int flags;
+
+    private ImeConfig(int flags, int inputType, int imeOptions){
+        this.flags = flags;
+        this.inputType = inputType;
+        this.imeOptions = imeOptions;
+    }
+
+    static ImeConfig of(CalTextField.TextFieldStyle style){
+        int flags = flagsOf(style);
+        ImeConfig config = cache.get(style);
+        if(config == null || config.flags != flags){
+            config = resolve(flags);
+            cache.put(style, config);
+        }
+        return config;
+    }
+
+    /** @return true for the action keys {@link #imeOptions} can ask for, as opposed to a plain enter */
+    static boolean isEditorAction(int actionId){
+        return actionId == EditorInfo.IME_ACTION_NEXT || actionId == EditorInfo.IME_ACTION_DONE
+                || actionId == EditorInfo.IME_ACTION_GO || actionId == EditorInfo.IME_ACTION_SEND
+                || actionId == EditorInfo.IME_ACTION_SEARCH;
+    }
+
+    private static final int NUMERIC = 1, AUTO_CORRECT = 2, SUGGESTIONS = 4, CARRIAGE_RETURN = 8, ACTION_DONE = 16;
+
+    private static int flagsOf(CalTextField.TextFieldStyle style){
+        int flags = 0;
+        if(style.androidKeyboardNumericalOnly) flags |= NUMERIC;
+        if(style.androidKeyboardAutoCorrect) flags |= AUTO_CORRECT;
+        if(style.androidKeyboardTextSuggestions) flags |= SUGGESTIONS;
+        if(style.androidKeyboardActionDone) flags |= ACTION_DONE;
+        if(style instanceof CalTextArea.TextAreaStyle && ((CalTextArea.TextAreaStyle) style).androidKeyboardCarriageReturn)
+            flags |= CARRIAGE_RETURN;
+        return flags;
+    }
+
+    private static ImeConfig resolve(int flags){
+        int inputType;
+        if((flags & NUMERIC) != 0){
+            inputType = InputType.TYPE_CLASS_NUMBER;
+        } else {
+            inputType = InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_CAP_SENTENCES;
+            if((flags & AUTO_CORRECT) != 0) inputType |= InputType.TYPE_TEXT_FLAG_AUTO_CORRECT;
+            if((flags & SUGGESTIONS) == 0) inputType |= InputType.TYPE_TEXT_FLAG_NO_SUGGESTIONS;
+            if((flags & CARRIAGE_RETURN) != 0) inputType |= InputType.TYPE_TEXT_FLAG_MULTI_LINE | InputType.TYPE_TEXT_FLAG_IME_MULTI_LINE;
+        }
+
+        int imeOptions = (flags & ACTION_DONE) != 0 ? EditorInfo.IME_ACTION_DONE : EditorInfo.IME_ACTION_NEXT;
+        //enter writes a newline in multi-line areas, the action key stays available where the IME has room for both
+        if((flags & CARRIAGE_RETURN) != 0 && (flags & NUMERIC) == 0) imeOptions |= EditorInfo.IME_FLAG_NO_ENTER_ACTION;
+        return new ImeConfig(flags, inputType, imeOptions);
+    }
+}
@@ -0,0 +1,56 @@
+package com.calanti.androidnativekeyboardinputtest;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Configuration;
+
+import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextArea;
+import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextField;
+
+/** Last measured keyboard height per orientation and keyboard kind (text, numeric, multi-line), kept in the app's
+ * SharedPreferences so the next session can predict the height before the IME has animated in.
+ * Loaded once on construction, written only when a measurement differs. UI thread only.
+ * @Author: calanti
+ */
+
+final class KeyboardHeightCache {
+
+    static final int KIND_TEXT = 0, KIND_NUMERIC = 1, KIND_MULTI_LINE = 2;
+    private static final int KINDS = 3, ORIENTATIONS = 2;
+
+    private static final String PREFERENCES = "calanti.keyboardHeights";
+
+    private final SharedPreferences preferences;
+    private final int[] heights = new int[ORIENTATIONS * KINDS];
+
+    KeyboardHeightCache(Context context){
+        preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        for(int i = 0; i < heights.length; i++) heights[i] = preferences.getInt(key(i), 0);
+    }
+
+    static int kindFor(CalTextField.TextFieldStyle style){
+        if(style.androidKeyboardNumericalOnly) return KIND_NUMERIC;
+        if(style instanceof CalTextArea.TextAreaStyle && ((CalTextArea.TextAreaStyle) style).androidKeyboardCarriageReturn) return KIND_MULTI_LINE;
+        return KIND_TEXT;
+    }
+
+    /** @return the last height measured in this orientation for the kind, 0 if never seen */
+    int get(int orientation, int kind){
+        return heights[index(orientation, kind)];
+    }
+
+    void put(int orientation, int kind, int height){
+        int index = index(orientation, kind);
+        if(heights[index] == height) return;
+        heights[index] = height;
+        preferences.edit().putInt(key(index), height).apply();
+    }
+
+    private static int index(int orientation, int kind){
+        return (orientation == Configuration.ORIENTATION_LANDSCAPE ? KINDS : 0) + kind;
+    }
+
+    private static String key(int index){
+        return (index < KINDS ? "portrait." : "landscape.") + index % KINDS;
+    }
+}
@@ -0,0 +1,146 @@
+package com.calanti.androidnativekeyboardinputtest;
+
+import android.annotation.TargetApi;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.WindowInsets;
+
+/** Works out the soft keyboard height from the root view and feeds it, debounced, to an {@link AndroidVisibleView}.
+ *
+ * On API 20+ the bottom system window inset is used, and every layout pass also measures the visible display frame
+ * into one reused Rect (fullscreen windows like ours don't always get the IME in their insets). Whichever covers more
+ * wins. Anything smaller than {@link #MIN_KEYBOARD_FRACTION} of the root is a navigation bar, not a keyboard.
+ *
+ * A new height is only reported once it has held for {@link #DEBOUNCE_MILLIS}, so transient layouts (the hidden
+ * EditText growing, the IME switching between layouts, rotation) don't look like the keyboard closing and reopening.
+ *
+ * Settled heights are remembered per orientation and keyboard kind in a {@link KeyboardHeightCache}. When a keyboard is
+ * requested, {@link #keyboardRequested(int)} reports the remembered height straight away, so keyboard aware layout can
+ * move on the first frame; the measurement corrects it once the IME is in. A prediction is never replaced by a "closed"
+ * height just because the IME is slow to come up, only by a measurement or by {@link #keyboardHidden()}.
+ * Runs on the UI thread and does not allocate after construction (apart from preference writes).
+ * @Author: calanti
+ */
+
+final class KeyboardHeightDetector implements View.OnLayoutChangeListener {
+
+    static final long DEBOUNCE_MILLIS = 120;
+    static final float MIN_KEYBOARD_FRACTION = 0.15f;
+
+    private final View rootView;
+    private final AndroidVisibleView visibleView;
+    private final KeyboardHeightCache heightCache;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final Rect visibleFrame = new Rect();
+    private int visibleWidth, visibleHeight;
+
+    /** Bottom system window inset, API 20+ only */
+    private int insetBottom;
+
+    /** Latest measured height and when it was first seen, waiting for the debounce */
+    private int pendingHeight;
+    private long pendingTimeMillis;
+    private int reportedHeight;
+    /** The reported height is a prediction no measurement has confirmed yet */
+    private boolean predicting;
+
+    /** Keyboard kind of the last request, measurements are stored under it */
+    private int keyboardKind = KeyboardHeightCache.KIND_TEXT;
+
+    private final Runnable settle = new Runnable() {
+        @Override
+        public void run() {
+            //layouts before the IME is in measure nothing, that is not the keyboard closing
+            if(predicting) return;
+            if(pendingHeight > 0) heightCache.put(orientation(), keyboardKind, pendingHeight);
+            if(pendingHeight == reportedHeight) return;
+            reportedHeight = pendingHeight;
+            visibleView.onKeyboardHeightChange(reportedHeight, pendingTimeMillis);
+        }
+    };
+
+    KeyboardHeightDetector(View rootView, AndroidVisibleView visibleView, KeyboardHeightCache heightCache){
+        this.rootView = rootView;
+        this.visibleView = visibleView;
+        this.heightCache = heightCache;
+
+        rootView.getWindowVisibleDisplayFrame(visibleFrame);
+        visibleWidth = visibleFrame.width();
+        visibleHeight = visibleFrame.height();
+
+        //this shifts min api to 11
+        rootView.addOnLayoutChangeListener(this);
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT_WATCH) rootView.setOnApplyWindowInsetsListener(new InsetsListener());
+    }
+
+    /** Called on the UI thread as a keyboard is requested, reports the height it is expected to have.
+     * @param keyboardKind one of the {@link KeyboardHeightCache} kinds */
+    void keyboardRequested(int keyboardKind){
+        this.keyboardKind = keyboardKind;
+        int predicted = heightCache.get(orientation(), keyboardKind);
+        //nothing known yet, or already measured
+        if(predicted == 0 || pendingHeight != 0) return;
+        predicting = true;
+        if(predicted != reportedHeight){
+            reportedHeight = predicted;
+            visibleView.onKeyboardHeightChange(predicted, SystemClock.uptimeMillis());
+        }
+    }
+
+    /** Called on the UI thread when the keyboard was hidden on purpose (not by the user), withdraws a prediction the
+     * IME never confirmed. Only call it while no keyboard session is binding or bound. */
+    void keyboardHidden(){
+        if(!predicting) return;
+        predicting = false;
+        handler.removeCallbacks(settle);
+        if(reportedHeight == pendingHeight) return;
+        reportedHeight = pendingHeight;
+        visibleView.onKeyboardHeightChange(reportedHeight, SystemClock.uptimeMillis());
+    }
+
+    private int orientation(){
+        return rootView.getResources().getConfiguration().orientation;
+    }
+
+    @Override
+    public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
+        measure();
+    }
+
+    private void measure(){
+        rootView.getWindowVisibleDisplayFrame(visibleFrame);
+
+        if (!(visibleWidth == visibleFrame.width() && visibleHeight == visibleFrame.height())) {
+            visibleWidth = visibleFrame.width();
+            visibleHeight = visibleFrame.height();
+            visibleView.onSizeChange(visibleWidth, visibleHeight);
+        }
+
+        int rootHeight = rootView.getHeight();
+        int covered = Math.max(insetBottom, rootHeight - visibleFrame.bottom);
+        int height = covered > rootHeight * MIN_KEYBOARD_FRACTION ? covered : 0;
+        if(height == pendingHeight) return;
+
+        //the IME is in, from here on measurements decide
+        if(height > 0) predicting = false;
+        pendingHeight = height;
+        pendingTimeMillis = SystemClock.uptimeMillis();
+        handler.removeCallbacks(settle);
+        handler.postDelayed(settle, DEBOUNCE_MILLIS);
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT_WATCH)
+    private class InsetsListener implements View.OnApplyWindowInsetsListener {
+        @Override
+        public WindowInsets onApplyWindowInsets(View v, WindowInsets insets) {
+            insetBottom = insets.getSystemWindowInsetBottom();
+            measure();
+            return v.onApplyWindowInsets(insets);
+        }
+    }
+}
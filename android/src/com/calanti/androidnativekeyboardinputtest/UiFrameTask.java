@@ -0,0 +1,79 @@
+package com.calanti.androidnativekeyboardinputtest;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Runs {@link #onFrame()} on the Android UI thread at most once per frame, no matter how many times
+ * {@link #schedule()} is called in between. On API 16+ the callback is aligned to the Choreographer vsync,
+ * older devices fall back to a plain Handler post.
+ *
+ * schedule() may be called from any thread and does not allocate.
+ * @Author: calanti
+ */
+
+abstract class UiFrameTask {
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    /** Choreographer.FrameCallback, kept untyped so this class still loads below API 16 */
+    private Object frameCallback;
+
+    private final Runnable postFrame = new Runnable() {
+        @Override
+        public void run() {
+            postFrame();
+        }
+    };
+
+    private final Runnable runFrame = new Runnable() {
+        @Override
+        public void run() {
+            runFrame();
+        }
+    };
+
+    UiFrameTask(){
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) frameCallback = new ChoreographerCallback();
+    }
+
+    /** Called once per frame on the UI thread, after at least one {@link #schedule()}. */
+    protected abstract void onFrame();
+
+    /** Request a call to {@link #onFrame()} on the next UI frame. */
+    void schedule(){
+        if(!scheduled.compareAndSet(false, true)) return;
+        if(Looper.myLooper() == Looper.getMainLooper()) postFrame();
+        else handler.post(postFrame);
+    }
+
+    /** Drop a pending frame, e.g. when the binding is torn down. */
+    void cancel(){
+        scheduled.set(false);
+    }
+
+    private void postFrame(){
+        if(frameCallback != null){
+            Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) frameCallback);
+        } else {
+            handler.post(runFrame);
+        }
+    }
+
+    private void runFrame(){
+        //clear first so anything scheduled from within onFrame lands on the next frame
+        if(!scheduled.compareAndSet(true, false)) return;
+        onFrame();
+    }
+
+    private class ChoreographerCallback implements Choreographer.FrameCallback {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            runFrame();
+        }
+    }
+}
@@ -8,18 +8,24 @@ import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.NinePatch;
+import com.badlogic.gdx.scenes.scene2d.Actor;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.scenes.scene2d.ui.Label;
 import com.badlogic.gdx.scenes.scene2d.ui.Table;
 import com.badlogic.gdx.scenes.scene2d.utils.NinePatchDrawable;
 import com.badlogic.gdx.utils.Align;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.viewport.FitViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
+import com.calanti.androidnativekeyboardinputtest.bridge.KeyboardLog;
+import com.calanti.androidnativekeyboardinputtest.bridge.KeyboardSnapshot;
 import com.calanti.androidnativekeyboardinputtest.interfaces.android.AndroidTextInputInterface;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.KeyboardHeightListener;
 import com.calanti.androidnativekeyboardinputtest.interfaces.android.VisibleView;
-import com.calanti.androidnativekeyboardinputtest.interfaces.android.VisibleViewSizeChangeListener;
 import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextArea;
 import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextField;
+import com.calanti.androidnativekeyboardinputtest.ui.KeyboardAvoidance;
+import com.calanti.androidnativekeyboardinputtest.ui.TextFieldMemoryTrimmer;
 
 /** Test libgdx application to demonstrate a new method of Android soft keyboard input.
  *  There is no backend modification so it should be fairly easy to build a project based on this
@@ -47,7 +53,8 @@ import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextFi
  *
  *  What makes this even more awesome? Well, we know the height of the keyboard, so with a little bit of logic we can also
  *  detect if the TextField is hidden by the keyboard and do something about it, such as moving the Actor upwards or
- *  the Stage camera down. I'll let you work this part out for yourself ;)
+ *  the Stage camera down. See ui > KeyboardAvoidance, which slides the stage root up just enough to keep the focused field
+ *  visible.
  *
  *  Many credits to "Willempie" on StackOverflow (http://stackoverflow.com/a/33188659/5862099) for providing the basis of
  *  the visible view stuff.
@@ -63,14 +70,26 @@ import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextFi
  * @author calanti (Graham Watson)
  * */
 
-public class AndroidNativeKeyboardInputTest extends Game implements VisibleViewSizeChangeListener {
+public class AndroidNativeKeyboardInputTest extends Game implements KeyboardHeightListener {
 
 	VisibleView visibleView;
 	AndroidTextInputInterface androidTextInputInterface;
 
 	private Stage stage;
+	/** Set between pause and resume, while the scene may be touched from another thread by trimMemory */
+	private boolean paused;
+	private final Object trimLock = new Object();
 	private BitmapFont font;
 	private Label keyboardLabel;
+	private float keyboardLabelY;
+	private KeyboardAvoidance keyboardAvoidance;
+
+	/** The text fields, in the order their index is kept in a saved snapshot */
+	private final Array<CalTextField> textFields = new Array<CalTextField>();
+
+	/** Focused field on pause and its session state, or a snapshot from a previous activity waiting for create() */
+	private CalTextField suspendedField;
+	private final KeyboardSnapshot suspendedSnapshot = new KeyboardSnapshot();
 
 	private Texture white1x1, cursor;
 
@@ -79,8 +98,8 @@ public class AndroidNativeKeyboardInputTest extends Game implements VisibleViewS
 
 	public AndroidNativeKeyboardInputTest(ApplicationBundle applicationBundle) {
 		this.visibleView = applicationBundle.getVisibleView();
-		//make this the listener for visible screen size change
-		if(this.visibleView != null) this.visibleView.setListener(this);
+		//listen for the keyboard opening/closing, on the gdx thread
+		if(this.visibleView != null) this.visibleView.addKeyboardHeightListener(this);
 		this.androidTextInputInterface = applicationBundle.getAndroidTextInputInterface();
 	}
 
@@ -136,6 +155,7 @@ public class AndroidNativeKeyboardInputTest extends Game implements VisibleViewS
 		CalTextArea calTextAreaCarriageReturn = new CalTextArea("Edit me too!", calTextAreaCarriageReturnStyle, androidTextInputInterface);
 		CalTextArea calTextAreaCompletionMode = new CalTextArea("Edit me as well!", calTextAreaCompletionModeStyle, androidTextInputInterface);
 		calTextAreaCompletionMode.setPrefRows(4);
+		textFields.addAll(calTextField, calNumericalTextField, calTextAreaCarriageReturn, calTextAreaCompletionMode);
 
 		//LABELS
 		Label.LabelStyle genericLabelStyle = new Label.LabelStyle(font, Color.BLACK);
@@ -180,6 +200,20 @@ public class AndroidNativeKeyboardInputTest extends Game implements VisibleViewS
 
 		stage.addActor(keyboardLabel);
 
+		//keep the focused field above the keyboard
+		keyboardAvoidance = new KeyboardAvoidance();
+		if(visibleView != null) {
+			keyboardAvoidance.onSizeChange(visibleView.getWidth(), visibleView.getHeight());
+			visibleView.addListener(keyboardAvoidance);
+			visibleView.addKeyboardHeightListener(keyboardAvoidance);
+		}
+		stage.addAction(keyboardAvoidance);
+
+		//saved by a previous instance of the activity (rotation, or the process was killed in the background)
+		if(suspendedSnapshot.valid && suspendedSnapshot.fieldId >= 0 && suspendedSnapshot.fieldId < textFields.size){
+			suspendedField = textFields.get(suspendedSnapshot.fieldId);
+			resumeSuspendedField();
+		}
 	}
 
 	@Override
@@ -187,9 +221,41 @@ public class AndroidNativeKeyboardInputTest extends Game implements VisibleViewS
 		Gdx.gl.glClearColor(1, 1, 1, 1);
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 		stage.act();
+		//the avoidance offset moves the whole root, keep the label on the keyboard
+		keyboardLabel.setY(keyboardLabelY - keyboardAvoidance.getOffset());
 		stage.draw();
 	}
 	
+	/** Lays the font out once ahead of the first focus, see AndroidLauncher.PREWARM_INPUT */
+	public void prewarm () {
+		if(font != null) CalTextField.prewarm(font);
+	}
+
+	/** Memory pressure from the platform, drops the render data of text fields nobody is looking at. Any thread.
+	 * While paused the GL thread is idle, so the trim runs right away on the calling thread, with resume waiting for it.
+	 * Otherwise we are showing: it is posted to the GL thread and leaves visible fields alone, whatever was asked.
+	 * @param includeVisible true once the app is in the background, then every unfocused field is trimmed */
+	public void trimMemory (boolean includeVisible) {
+		synchronized (trimLock) {
+			if(paused){
+				trim(includeVisible);
+				return;
+			}
+		}
+		Gdx.app.postRunnable(new Runnable() {
+			@Override
+			public void run() {
+				trim(false);
+			}
+		});
+	}
+
+	private void trim (boolean includeVisible) {
+		if(stage == null) return;
+		int bytes = TextFieldMemoryTrimmer.trim(stage, includeVisible);
+		KeyboardLog.info("trimMemory, bytes released:", bytes);
+	}
+
 	@Override
 	public void dispose () {
 		font.dispose();
@@ -199,29 +265,88 @@ public class AndroidNativeKeyboardInputTest extends Game implements VisibleViewS
 	}
 
 	@Override
-	public void onSizeChange(float width, float height) {
-		float screenKeyboardHeight = Gdx.graphics.getHeight() - height;
-		int gameKeyboardHeight = (int) (screenKeyboardHeight / hScale);
-		boolean keyboardOpen = screenKeyboardHeight > 2;
+	public void onKeyboardOpened(float height, long timeMillis) {
+		showKeyboardHeight(height, "yes");
+	}
 
-		String keyboardText = "Keyboard height: "+gameKeyboardHeight+", is open: "+(keyboardOpen ? "yes" : "no, removing stage focus");
+	@Override
+	public void onKeyboardHeightChanged(float height, long timeMillis) {
+		showKeyboardHeight(height, "yes");
+	}
 
+	@Override
+	public void onKeyboardClosed(long timeMillis) {
+		showKeyboardHeight(0, "no, removing stage focus");
+		androidTextInputInterface.keyboardHideDetected();
+		if(stage != null) stage.unfocusAll();
+	}
+
+	private void showKeyboardHeight(float screenKeyboardHeight, String open) {
+		int gameKeyboardHeight = (int) (screenKeyboardHeight / hScale);
 		if(keyboardLabel != null) {
-			keyboardLabel.setText(keyboardText);
-			keyboardLabel.setPosition(0, gameKeyboardHeight);
+			keyboardLabel.setText("Keyboard height: "+gameKeyboardHeight+", is open: "+open);
+			keyboardLabelY = gameKeyboardHeight;
 		}
-		
-		if(!keyboardOpen){
-			androidTextInputInterface.keyboardHideDetected();
-		        if(stage != null) stage.unfocusAll();
+	}
+
+	/** The focused field's snapshot taken on pause, for the platform's saved state. Call after pause, from any thread.
+	 * @return null if no field was focused */
+	public byte[] saveKeyboardState () {
+		synchronized (trimLock) {
+			if(!paused || suspendedField == null) return null;
+			suspendedSnapshot.fieldId = textFields.indexOf(suspendedField, true);
+			byte[] bytes = new byte[KeyboardSnapshot.SIZE];
+			suspendedSnapshot.write(bytes, 0);
+			return bytes;
 		}
 	}
 
+	/** A snapshot from {@link #saveKeyboardState()} of a previous instance, before create(). Its field is focused again
+	 * on create if it still holds the same text. */
+	public void restoreKeyboardState (byte[] bytes) {
+		suspendedSnapshot.read(bytes, 0);
+	}
+
 	@Override
 	public void pause() {
 		super.pause();
-		//drop keyboard and focus on pause (otherwise it stays open is Task Manager / Home button pressed)
-		androidTextInputInterface.forceHideKeyboard();
+		//drop keyboard and focus on pause (otherwise it stays open is Task Manager / Home button pressed),
+		//but remember the focused field so resume can bring it straight back
+		Actor focus = stage != null ? stage.getKeyboardFocus() : null;
+		if(focus instanceof CalTextField){
+			suspendedField = (CalTextField) focus;
+			suspendedField.saveSnapshot(suspendedSnapshot);
+			androidTextInputInterface.suspendKeyboard();
+		} else {
+			androidTextInputInterface.forceHideKeyboard();
+		}
 		if(stage != null) stage.unfocusAll();
+		//last, the scene is left alone from here on
+		synchronized (trimLock) {
+			paused = true;
+		}
+	}
+
+	@Override
+	public void resume() {
+		//waits for a trim still running on the UI thread
+		synchronized (trimLock) {
+			paused = false;
+		}
+		super.resume();
+		resumeSuspendedField();
+	}
+
+	private void resumeSuspendedField() {
+		if(suspendedField == null) return;
+		//queued behind the keyboard events that happened while paused (such as the keyboard closing)
+		Gdx.app.postRunnable(new Runnable() {
+			@Override
+			public void run() {
+				if(suspendedField != null && stage.getKeyboardFocus() == null) suspendedField.resumeSnapshot(suspendedSnapshot);
+				suspendedField = null;
+				suspendedSnapshot.clear();
+			}
+		});
 	}
 }
@@ -0,0 +1,227 @@
+package com.calanti.androidnativekeyboardinputtest.bridge;
+
+/** Platform independent model of the text an IME edits through an Android InputConnection.
+ * Holds the text, selection and composing region, and implements the InputConnection editing semantics
+ * (commitText, setComposingText, deleteSurroundingText, ...) so every change can be reported to the
+ * {@link Listener} as a single replace edit instead of a full copy of the text.
+ *
+ * The Android side only forwards InputConnection calls to this class, so the edit behaviour can be driven
+ * by any stand-in IME on the JVM. Not thread safe, use from one thread only (the Android UI thread).
+ * @Author: calanti
+ */
+
+public class ImeEditor {
+
+    /** Receives every change made by the IME. */
+    public interface Listener {
+        /** Text in [start, end) of the previous text was replaced by replacement. Both may be empty for a pure
+         * selection/composing change. Selection and composing positions are in the new text, composing
+         * start/end are -1 when there is no composing region. */
+        void onEdit(int start, int end, CharSequence replacement, int selectionStart, int selectionEnd,
+                    int composingStart, int composingEnd);
+    }
+
+    private final StringBuilder text = new StringBuilder();
+    private int selectionStart, selectionEnd;
+    private int composingStart = -1, composingEnd = -1;
+
+    private Listener listener;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Replace the whole content without reporting it, e.g. when binding to a new TextField. */
+    public void reset(CharSequence newText, int selectionStart, int selectionEnd) {
+        text.setLength(0);
+        if (newText != null) text.append(newText);
+        composingStart = composingEnd = -1;
+        setSelectionInternal(selectionStart, selectionEnd);
+    }
+
+    /** Take the TextField's corrected text without reporting it, e.g. after a filter, max length or stripped enter.
+     * Only the part that differs is replaced, so a composing region outside it stays in step instead of being dropped. */
+    public void sync(CharSequence newText, int selectionStart, int selectionEnd) {
+        if (newText == null) newText = "";
+        int oldLength = text.length(), newLength = newText.length();
+        int max = Math.min(oldLength, newLength);
+        int prefix = 0;
+        while (prefix < max && text.charAt(prefix) == newText.charAt(prefix)) prefix++;
+        max -= prefix;
+        int suffix = 0;
+        while (suffix < max && text.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) suffix++;
+        int end = oldLength - suffix, replacementEnd = newLength - suffix;
+        if (prefix < end || prefix < replacementEnd) {
+            adjustComposing(prefix, end, replacementEnd - prefix);
+            text.replace(prefix, end, newText.subSequence(prefix, replacementEnd).toString());
+        }
+        setSelectionInternal(selectionStart, selectionEnd);
+    }
+
+    /** Move the selection without reporting it, e.g. when the TextField moved its own cursor. */
+    public void select(int selectionStart, int selectionEnd) {
+        setSelectionInternal(selectionStart, selectionEnd);
+    }
+
+    public CharSequence getText() {
+        return text;
+    }
+
+    public int length() {
+        return text.length();
+    }
+
+    public int getSelectionStart() {
+        return selectionStart;
+    }
+
+    public int getSelectionEnd() {
+        return selectionEnd;
+    }
+
+    public int getComposingStart() {
+        return composingStart;
+    }
+
+    public int getComposingEnd() {
+        return composingEnd;
+    }
+
+    public boolean hasComposingRegion() {
+        return composingStart >= 0;
+    }
+
+    /** Same semantics as InputConnection.commitText, replaces the composing region or else the selection. */
+    public void commitText(CharSequence replacement, int newCursorPosition) {
+        int start, end;
+        if (hasComposingRegion()) {
+            start = composingStart;
+            end = composingEnd;
+        } else {
+            start = Math.min(selectionStart, selectionEnd);
+            end = Math.max(selectionStart, selectionEnd);
+        }
+        composingStart = composingEnd = -1;
+        replace(start, end, replacement, newCursorPosition);
+    }
+
+    public void setComposingText(CharSequence replacement, int newCursorPosition) {
+        int start, end;
+        if (hasComposingRegion()) {
+            start = composingStart;
+            end = composingEnd;
+        } else {
+            start = Math.min(selectionStart, selectionEnd);
+            end = Math.max(selectionStart, selectionEnd);
+        }
+        if (replacement.length() == 0) {
+            composingStart = composingEnd = -1;
+        } else {
+            composingStart = start;
+            composingEnd = start + replacement.length();
+        }
+        replace(start, end, replacement, newCursorPosition);
+    }
+
+    public void setComposingRegion(int start, int end) {
+        start = clamp(start);
+        end = clamp(end);
+        if (start == end) {
+            composingStart = composingEnd = -1;
+        } else {
+            composingStart = Math.min(start, end);
+            composingEnd = Math.max(start, end);
+        }
+        notifyEdit(selectionStart, selectionStart, "");
+    }
+
+    public void finishComposingText() {
+        if (!hasComposingRegion()) return;
+        composingStart = composingEnd = -1;
+        notifyEdit(selectionStart, selectionStart, "");
+    }
+
+    /** Deletes beforeLength chars before the selection and afterLength chars after it, reported as up to two edits. */
+    public void deleteSurroundingText(int beforeLength, int afterLength) {
+        int min = Math.min(selectionStart, selectionEnd);
+        int max = Math.max(selectionStart, selectionEnd);
+        if (afterLength > 0) {
+            int end = Math.min(text.length(), max + afterLength);
+            if (end > max) delete(max, end);
+        }
+        if (beforeLength > 0) {
+            int start = Math.max(0, min - beforeLength);
+            if (start < min) delete(start, min);
+        }
+    }
+
+    public void setSelection(int start, int end) {
+        setSelectionInternal(start, end);
+        notifyEdit(selectionStart, selectionStart, "");
+    }
+
+    public CharSequence getTextBeforeCursor(int n) {
+        int end = Math.min(selectionStart, selectionEnd);
+        return text.subSequence(Math.max(0, end - Math.max(0, n)), end);
+    }
+
+    public CharSequence getTextAfterCursor(int n) {
+        int start = Math.max(selectionStart, selectionEnd);
+        return text.subSequence(start, Math.min(text.length(), start + Math.max(0, n)));
+    }
+
+    /** @return null if nothing is selected, as InputConnection expects */
+    public CharSequence getSelectedText() {
+        if (selectionStart == selectionEnd) return null;
+        return text.subSequence(Math.min(selectionStart, selectionEnd), Math.max(selectionStart, selectionEnd));
+    }
+
+    private void delete(int start, int end) {
+        adjustComposing(start, end, 0);
+        text.delete(start, end);
+        int delta = end - start;
+        selectionStart = shiftForDelete(selectionStart, start, end, delta);
+        selectionEnd = shiftForDelete(selectionEnd, start, end, delta);
+        notifyEdit(start, end, "");
+    }
+
+    private void replace(int start, int end, CharSequence replacement, int newCursorPosition) {
+        text.replace(start, end, replacement.toString());
+        int cursor = newCursorPosition > 0 ? start + replacement.length() + newCursorPosition - 1 : start + newCursorPosition;
+        setSelectionInternal(cursor, cursor);
+        notifyEdit(start, end, replacement);
+    }
+
+    /** Keeps a composing region that isn't itself being replaced in step with an edit elsewhere. */
+    private void adjustComposing(int start, int end, int replacementLength) {
+        if (!hasComposingRegion()) return;
+        int delta = replacementLength - (end - start);
+        if (composingEnd <= start) return;
+        if (composingStart >= end) {
+            composingStart += delta;
+            composingEnd += delta;
+        } else {
+            //overlapping edits end the composition, like Android does when spans collapse
+            composingStart = composingEnd = -1;
+        }
+    }
+
+    private static int shiftForDelete(int position, int start, int end, int delta) {
+        if (position >= end) return position - delta;
+        if (position > start) return start;
+        return position;
+    }
+
+    private void setSelectionInternal(int start, int end) {
+        selectionStart = clamp(start);
+        selectionEnd = clamp(end);
+    }
+
+    private int clamp(int position) {
+        return Math.max(0, Math.min(position, text.length()));
+    }
+
+    private void notifyEdit(int start, int end, CharSequence replacement) {
+        if (listener != null) listener.onEdit(start, end, replacement, selectionStart, selectionEnd, composingStart, composingEnd);
+    }
+}
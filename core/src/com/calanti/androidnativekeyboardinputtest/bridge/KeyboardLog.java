@@ -0,0 +1,192 @@
+package com.calanti.androidnativekeyboardinputtest.bridge;
+
+import com.badlogic.gdx.Gdx;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Leveled logging and binary tracing for the keyboard bridge, cheap enough to leave in the keystroke path.
+ *
+ * Logging: call sites pass a constant message plus primitive arguments (fixed-arity overloads, no varargs), the message
+ * is only built when the level is enabled, so a disabled call is one static int compare.
+ *
+ * Tracing: {@link #trace(int, int, int)} records an event id, the calling thread's hash, two ints and a nanosecond
+ * timestamp into preallocated ring buffers, without allocating or locking. Text payloads are only copied when
+ * enabled in {@link #enableTrace(int, boolean)}. {@link #writeTrace(OutputStream)} dumps the ring in a compact
+ * binary form: per record a long timestamp, then event, thread, a, b as ints, then a short text length and the chars.
+ * @Author: calanti
+ */
+
+public final class KeyboardLog {
+
+    public static final int NONE = 0, ERROR = 1, INFO = 2, DEBUG = 3;
+
+    /** Trace event ids */
+    public static final int EVENT_TEXT_CHANGED = 1, EVENT_SET_TEXT = 2, EVENT_SET_SELECTION = 3, EVENT_REQUEST_KEYBOARD = 4,
+            EVENT_FORCE_HIDE = 5, EVENT_HIDE_DETECTED = 6, EVENT_TEXT_REPLACED = 7, EVENT_STALE_DROPPED = 8,
+            EVENT_STALE_SESSION = 9, EVENT_EDITOR_ACTION = 10, EVENT_WINDOW_SLID = 11;
+
+    /** Messages above this level are dropped at the call site */
+    public static int level = NONE;
+    /** If false, debug messages only log the length of any text, not its content */
+    public static boolean logTextPayloads;
+
+    private static final String TAG = "Keyboard";
+
+    private static volatile Trace trace;
+
+    private KeyboardLog() {
+    }
+
+    public static boolean isEnabled(int messageLevel) {
+        return messageLevel <= level;
+    }
+
+    public static void error(String message, Throwable throwable) {
+        if (level < ERROR) return;
+        if (Gdx.app != null) Gdx.app.error(TAG, message, throwable);
+        else {
+            System.err.println(TAG + ": " + message);
+            if (throwable != null) throwable.printStackTrace();
+        }
+    }
+
+    public static void info(String message) {
+        if (level < INFO) return;
+        print(message);
+    }
+
+    public static void info(String message, int a) {
+        if (level < INFO) return;
+        print(message + " " + a);
+    }
+
+    public static void debug(String message) {
+        if (level < DEBUG) return;
+        print(message);
+    }
+
+    public static void debug(String message, int a) {
+        if (level < DEBUG) return;
+        print(message + " " + a);
+    }
+
+    public static void debug(String message, int a, int b) {
+        if (level < DEBUG) return;
+        print(message + " " + a + " " + b);
+    }
+
+    /** The text content is only logged with {@link #logTextPayloads} */
+    public static void debug(String message, int a, int b, CharSequence text) {
+        if (level < DEBUG) return;
+        if (logTextPayloads) print(message + " " + a + " " + b + " \"" + text + "\"");
+        else print(message + " " + a + " " + b + " (" + (text == null ? 0 : text.length()) + " chars)");
+    }
+
+    private static void print(String message) {
+        if (Gdx.app != null) Gdx.app.log(TAG, message);
+        else System.out.println(TAG + ": " + message);
+    }
+
+    /** Start recording trace events into a ring of the given number of records.
+     * @param textPayloads if true, up to 64 chars of text are kept per record */
+    public static void enableTrace(int capacity, boolean textPayloads) {
+        trace = new Trace(capacity, textPayloads);
+    }
+
+    public static void disableTrace() {
+        trace = null;
+    }
+
+    public static boolean isTracing() {
+        return trace != null;
+    }
+
+    public static void trace(int event, int a, int b) {
+        Trace trace = KeyboardLog.trace;
+        if (trace == null) return;
+        trace.record(event, a, b, null);
+    }
+
+    public static void trace(int event, int a, int b, CharSequence text) {
+        Trace trace = KeyboardLog.trace;
+        if (trace == null) return;
+        trace.record(event, a, b, trace.textPayloads ? text : null);
+    }
+
+    /** Writes the recorded events, oldest first. Records being written concurrently may come out torn. */
+    public static void writeTrace(OutputStream outputStream) throws IOException {
+        Trace trace = KeyboardLog.trace;
+        DataOutputStream out = new DataOutputStream(outputStream);
+        if (trace == null) {
+            out.writeInt(0);
+            out.flush();
+            return;
+        }
+        trace.write(out);
+        out.flush();
+    }
+
+    private static final class Trace {
+        static final int TEXT_CAPACITY = 64;
+
+        final int capacity;
+        final boolean textPayloads;
+        final AtomicLong next = new AtomicLong();
+
+        final long[] times;
+        final int[] ints;
+        final char[] texts;
+        final short[] textLengths;
+
+        Trace(int capacity, boolean textPayloads) {
+            if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
+            this.capacity = capacity;
+            this.textPayloads = textPayloads;
+            times = new long[capacity];
+            ints = new int[capacity * 4];
+            textLengths = new short[capacity];
+            texts = textPayloads ? new char[capacity * TEXT_CAPACITY] : null;
+        }
+
+        void record(int event, int a, int b, CharSequence text) {
+            int slot = (int) (next.getAndIncrement() % capacity);
+            times[slot] = System.nanoTime();
+            int i = slot * 4;
+            ints[i] = event;
+            ints[i + 1] = System.identityHashCode(Thread.currentThread());
+            ints[i + 2] = a;
+            ints[i + 3] = b;
+            int length = 0;
+            if (text != null) {
+                length = Math.min(TEXT_CAPACITY, text.length());
+                int offset = slot * TEXT_CAPACITY;
+                for (int c = 0; c < length; c++)
+                    texts[offset + c] = text.charAt(c);
+            }
+            textLengths[slot] = (short) length;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            long end = next.get();
+            long start = Math.max(0, end - capacity);
+            out.writeInt((int) (end - start));
+            for (long r = start; r < end; r++) {
+                int slot = (int) (r % capacity);
+                out.writeLong(times[slot]);
+                int i = slot * 4;
+                out.writeInt(ints[i]);
+                out.writeInt(ints[i + 1]);
+                out.writeInt(ints[i + 2]);
+                out.writeInt(ints[i + 3]);
+                int length = textLengths[slot];
+                out.writeShort(length);
+                int offset = slot * TEXT_CAPACITY;
+                for (int c = 0; c < length; c++)
+                    out.writeChar(texts[offset + c]);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.calanti.androidnativekeyboardinputtest.bridge;
+
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.AndroidKeyboardFeedbackInterface;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/** Binding lifecycle of a native keyboard to one TextField, shared between the GL and UI threads without locks.
+ *
+ * IDLE -> BINDING (gdx asked for the keyboard) -> BOUND (the UI thread set the native side up) -> UNBINDING
+ * (gdx hid or lost the keyboard) -> IDLE (the UI thread tore the native side down). Every {@link #bind} starts a new
+ * session id, from any phase, so the latest focus always wins.
+ *
+ * The phase, session id and target field are swapped together as one immutable {@link State} with compareAndSet, so a
+ * thread never sees the id of one session with the field of another. Transitions allocate, the keystroke path does not:
+ * events carry the id they were produced under and {@link #isBound(int)} is a single volatile read and compare.
+ * @Author: calanti
+ */
+
+public final class KeyboardSession {
+
+    public static final int IDLE = 0, BINDING = 1, BOUND = 2, UNBINDING = 3;
+
+    public static final class State {
+        public final int id;
+        public final int phase;
+        /** The field this session delivers to, null when IDLE */
+        public final AndroidKeyboardFeedbackInterface target;
+
+        State(int id, int phase, AndroidKeyboardFeedbackInterface target) {
+            this.id = id;
+            this.phase = phase;
+            this.target = target;
+        }
+    }
+
+    private final AtomicReference<State> state = new AtomicReference<State>(new State(0, IDLE, null));
+
+    public State get() {
+        return state.get();
+    }
+
+    /** Starts a new session for the field, superseding whatever session was current.
+     * @return the new session id */
+    public int bind(AndroidKeyboardFeedbackInterface target) {
+        while (true) {
+            State current = state.get();
+            State next = new State(current.id + 1, BINDING, target);
+            if (state.compareAndSet(current, next)) return next.id;
+        }
+    }
+
+    /** Called once the native side is set up for the session.
+     * @return false if the session was superseded or unbound meanwhile, the caller should then leave things alone */
+    public boolean bound(int id) {
+        return transition(id, BINDING, BOUND);
+    }
+
+    /** Ends the current session if it is BINDING or BOUND.
+     * @return the id of the session now UNBINDING, or -1 if there was nothing to unbind */
+    public int unbind() {
+        while (true) {
+            State current = state.get();
+            if (current.phase != BINDING && current.phase != BOUND) return -1;
+            if (state.compareAndSet(current, new State(current.id, UNBINDING, current.target))) return current.id;
+        }
+    }
+
+    /** Called once the native side is torn down. A no-op if a new session was bound meanwhile. */
+    public boolean unbound(int id) {
+        return transition(id, UNBINDING, IDLE);
+    }
+
+    public boolean isBound(int id) {
+        State current = state.get();
+        return current.id == id && current.phase == BOUND;
+    }
+
+    /** True while BINDING or BOUND, i.e. gdx considers the keyboard attached to a field */
+    public boolean isActive() {
+        int phase = state.get().phase;
+        return phase == BINDING || phase == BOUND;
+    }
+
+    /** The field bound under the session, or null if the session is no longer the bound one */
+    public AndroidKeyboardFeedbackInterface target(int id) {
+        State current = state.get();
+        return current.id == id && current.phase == BOUND ? current.target : null;
+    }
+
+    private boolean transition(int id, int from, int to) {
+        while (true) {
+            State current = state.get();
+            if (current.id != id || current.phase != from) return false;
+            if (state.compareAndSet(current, new State(id, to, to == IDLE ? null : current.target))) return true;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.calanti.androidnativekeyboardinputtest.bridge;
+
+/** Compact state of the focused field's keyboard session, taken on pause and used on resume to put the cursor,
+ * selection and scroll back and rebind the keyboard without copying the text again.
+ *
+ * The text itself is not stored, only its revision, length and hash (String caches it), so a snapshot can tell whether
+ * the field still holds the same text. {@link #write(byte[], int)} / {@link #read(byte[], int)} use a fixed {@link #SIZE}
+ * byte big-endian layout for keeping it across activity recreation, see AndroidLauncher#onSaveInstanceState.
+ * @Author: calanti
+ */
+
+public final class KeyboardSnapshot {
+
+    public static final int SIZE = 38;
+    private static final byte VERSION = 2;
+
+    public static final int INPUT_TEXT = 0, INPUT_NUMERIC = 1, INPUT_MULTI_LINE = 2;
+
+    public boolean valid;
+    /** Which of its fields the app took the snapshot of, -1 if it keeps track of that itself */
+    public int fieldId = -1;
+    public int revision;
+    public int cursor, selectionStart, selectionEnd;
+    /** One of the INPUT_ kinds */
+    public int inputType;
+    /** First visible line of a text area, 0 for single line fields */
+    public int scrollLine;
+    public int textLength, textHash;
+
+    public void clear() {
+        valid = false;
+    }
+
+    /** True if the snapshot was taken of this exact text, at this revision */
+    public boolean matches(String text, int revision) {
+        return valid && revision == this.revision && text.length() == textLength && text.hashCode() == textHash;
+    }
+
+    /** @return the offset after the snapshot */
+    public int write(byte[] buffer, int offset) {
+        buffer[offset++] = VERSION;
+        buffer[offset++] = (byte) (valid ? 1 : 0);
+        offset = writeInt(buffer, offset, fieldId);
+        offset = writeInt(buffer, offset, revision);
+        offset = writeInt(buffer, offset, cursor);
+        offset = writeInt(buffer, offset, selectionStart);
+        offset = writeInt(buffer, offset, selectionEnd);
+        offset = writeInt(buffer, offset, inputType);
+        offset = writeInt(buffer, offset, scrollLine);
+        offset = writeInt(buffer, offset, textLength);
+        return writeInt(buffer, offset, textHash);
+    }
+
+    /** @return false (and an invalid snapshot) if the buffer holds no snapshot of this version */
+    public boolean read(byte[] buffer, int offset) {
+        valid = false;
+        if (buffer == null || buffer.length - offset < SIZE || buffer[offset] != VERSION) return false;
+        boolean valid = buffer[offset + 1] == 1;
+        offset += 2;
+        fieldId = readInt(buffer, offset);
+        revision = readInt(buffer, offset + 4);
+        cursor = readInt(buffer, offset + 8);
+        selectionStart = readInt(buffer, offset + 12);
+        selectionEnd = readInt(buffer, offset + 16);
+        inputType = readInt(buffer, offset + 20);
+        scrollLine = readInt(buffer, offset + 24);
+        textLength = readInt(buffer, offset + 28);
+        textHash = readInt(buffer, offset + 32);
+        this.valid = valid;
+        return valid;
+    }
+
+    private static int writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+        return offset + 4;
+    }
+
+    private static int readInt(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xff) << 24 | (buffer[offset + 1] & 0xff) << 16
+                | (buffer[offset + 2] & 0xff) << 8 | (buffer[offset + 3] & 0xff);
+    }
+}
@@ -0,0 +1,56 @@
+package com.calanti.androidnativekeyboardinputtest.bridge;
+
+/** Latest text/selection commands from gdx waiting to be applied to the native input view.
+ * A drag-select only ever needs the newest selection, so older ones are simply overwritten, and a new text
+ * carries its own cursor so it discards any selection queued before it.
+ *
+ * Written from the GL thread, {@link #take()} on the UI thread copies the pending state into the taken* fields.
+ * Shared by the Android bridges and the JVM simulator, so the simulator coalesces exactly like a device.
+ * @Author: calanti
+ */
+
+public final class PendingTextCommands {
+
+    private CharSequence text;
+    private int textCursor, textRevision;
+    private int selectionStart, selectionEnd;
+    private boolean hasSelection;
+
+    /** State handed over by the last {@link #take()}, UI thread only */
+    public CharSequence takenText;
+    public int takenTextCursor, takenTextRevision;
+    public int takenSelectionStart, takenSelectionEnd;
+    public boolean takenSelection;
+
+    public synchronized void setText(CharSequence text, int cursorPosition, int revision){
+        this.text = text;
+        this.textCursor = cursorPosition;
+        this.textRevision = revision;
+        this.hasSelection = false;
+    }
+
+    public synchronized void setSelection(int start, int end){
+        this.selectionStart = start;
+        this.selectionEnd = end;
+        this.hasSelection = true;
+    }
+
+    /** Drops anything queued, it belonged to the previous binding. */
+    public synchronized void clear(){
+        text = null;
+        hasSelection = false;
+    }
+
+    /** @return true if there was anything to apply. Text (if any) must be applied before the selection. */
+    public synchronized boolean take(){
+        takenText = text;
+        takenTextCursor = textCursor;
+        takenTextRevision = textRevision;
+        takenSelectionStart = selectionStart;
+        takenSelectionEnd = selectionEnd;
+        takenSelection = hasSelection;
+        text = null;
+        hasSelection = false;
+        return takenText != null || takenSelection;
+    }
+}
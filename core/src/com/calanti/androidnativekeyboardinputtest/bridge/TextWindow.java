@@ -0,0 +1,121 @@
+package com.calanti.androidnativekeyboardinputtest.bridge;
+
+/** The part of a long document mirrored into the hidden EditText: a few KB around the cursor instead of the whole
+ * text, so a keystroke costs Android and the core work in proportion to the window, not to the document.
+ *
+ * Only gdx changes the document outside the window (and then sends the whole text again), so that part stays in the
+ * String the window was cut from. {@link #edited(String)} turns a new EditText content into one replacement in
+ * document offsets, {@link #slide(int, int)} stitches the document together and cuts a new window around the selection.
+ * Platform independent like {@link ImeEditor}, AndroidKeyboard uses it on the UI thread only.
+ * @Author: calanti
+ */
+
+public final class TextWindow {
+
+    /** Window length in chars, the window is the whole document if that is shorter */
+    public final int length;
+    /** A cursor closer than this to an edge the document continues past should slide the window */
+    private final int margin;
+
+    /** Document the window was cut from, and the window's range in it */
+    private String source = "";
+    private int sourceStart, sourceEnd;
+    /** Window content as last synced with the EditText, at sourceStart in the document */
+    private String text = "";
+
+    /** Replacement found by the last {@link #edited(String)}, in document offsets */
+    public int editStart, editEnd;
+    public String editReplacement;
+
+    public TextWindow(int length){
+        if(length <= 0) throw new IllegalArgumentException("length must be > 0: " + length);
+        this.length = length;
+        this.margin = length / 8;
+    }
+
+    /** Takes a new document and cuts the window around the cursor.
+     * @return the window text for the EditText */
+    public String reset(String document, int cursor){
+        return reset(document, cursor, cursor);
+    }
+
+    /** Takes a new document and cuts the window around the selection, or around its cursor end if the selection is
+     * longer than the window (the anchor is then clamped to the window by {@link #toWindow(int)}).
+     * @return the window text for the EditText */
+    public String reset(String document, int anchor, int cursor){
+        int documentLength = document.length();
+        cursor = Math.max(0, Math.min(cursor, documentLength));
+        anchor = Math.max(0, Math.min(anchor, documentLength));
+        int center = Math.abs(cursor - anchor) <= length ? (cursor + anchor) / 2 : cursor;
+        int start = Math.max(0, Math.min(center - length / 2, documentLength - length));
+        int end = Math.min(documentLength, start + length);
+        //never split a surrogate pair
+        if(start > 0 && Character.isLowSurrogate(document.charAt(start))) start--;
+        if(end < documentLength && Character.isLowSurrogate(document.charAt(end))) end++;
+        source = document;
+        sourceStart = start;
+        sourceEnd = end;
+        text = document.substring(start, end);
+        return text;
+    }
+
+    /** Cuts a new window around the selection, with the edits made in the current one.
+     * @return the window text for the EditText */
+    public String slide(int anchor, int cursor){
+        return reset(getDocument(), anchor, cursor);
+    }
+
+    /** The whole document with the edits made in the window, allocates */
+    public String getDocument(){
+        return source.substring(0, sourceStart) + text + source.substring(sourceEnd);
+    }
+
+    /** Takes the EditText content as the new window content.
+     * @return false if nothing changed, otherwise the replacement is in editStart, editEnd and editReplacement */
+    public boolean edited(String newText){
+        String oldText = text;
+        int oldLength = oldText.length(), newLength = newText.length();
+        int max = Math.min(oldLength, newLength);
+        int prefix = 0;
+        while(prefix < max && oldText.charAt(prefix) == newText.charAt(prefix)) prefix++;
+        if(prefix == oldLength && prefix == newLength) return false;
+        max -= prefix;
+        int suffix = 0;
+        while(suffix < max && oldText.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) suffix++;
+        editStart = sourceStart + prefix;
+        editEnd = sourceStart + oldLength - suffix;
+        editReplacement = newText.substring(prefix, newLength - suffix);
+        text = newText;
+        return true;
+    }
+
+    /** True if the document offset is outside the window, or close to an edge the document continues past */
+    public boolean needsSlide(int offset){
+        int start = sourceStart, end = getEnd();
+        if(offset < start || offset > end) return true;
+        return (start > 0 && offset - start < margin) || (end < documentLength() && end - offset < margin);
+    }
+
+    /** True if the document offset is in the window, edges included */
+    public boolean contains(int offset){
+        return offset >= sourceStart && offset <= getEnd();
+    }
+
+    /** Document offset to EditText offset, clamped to the window */
+    public int toWindow(int offset){
+        return Math.max(0, Math.min(offset - sourceStart, text.length()));
+    }
+
+    /** Document offset of the window */
+    public int getStart(){
+        return sourceStart;
+    }
+
+    public int getEnd(){
+        return sourceStart + text.length();
+    }
+
+    public int documentLength(){
+        return sourceStart + text.length() + source.length() - sourceEnd;
+    }
+}
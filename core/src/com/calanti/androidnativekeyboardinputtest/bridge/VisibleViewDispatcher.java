@@ -0,0 +1,133 @@
+package com.calanti.androidnativekeyboardinputtest.bridge;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.SnapshotArray;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.KeyboardHeightListener;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.VisibleView;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.VisibleViewSizeChangeListener;
+
+/** Carries visible view size and keyboard height changes from the platform thread to the GL thread, for
+ * {@link VisibleView} implementations.
+ *
+ * The platform side only overwrites one preallocated slot and, if nothing is pending yet, posts one preallocated
+ * Runnable with Gdx.app.postRunnable. However often layout fires within a frame, listeners see the latest value once,
+ * on the GL thread. Keyboard open/height/close events are derived on the GL thread from the last delivered height,
+ * so an open and close within the same frame cancel out.
+ *
+ * Listeners are added and removed on the GL thread and may remove themselves while being notified.
+ * @Author: calanti
+ */
+
+public final class VisibleViewDispatcher {
+
+    private final SnapshotArray<VisibleViewSizeChangeListener> sizeListeners = new SnapshotArray<VisibleViewSizeChangeListener>(false, 4, VisibleViewSizeChangeListener.class);
+    private final SnapshotArray<KeyboardHeightListener> keyboardListeners = new SnapshotArray<KeyboardHeightListener>(false, 4, KeyboardHeightListener.class);
+
+    /** Latest values from the platform thread, guarded by this */
+    private float width, height, keyboardHeight;
+    private long keyboardTimeMillis;
+    private boolean posted;
+
+    /** Last values delivered to listeners, GL thread only */
+    private float deliveredWidth, deliveredHeight, deliveredKeyboardHeight;
+
+    private final Runnable dispatch = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+
+    public VisibleViewDispatcher(float width, float height) {
+        this.width = this.deliveredWidth = width;
+        this.height = this.deliveredHeight = height;
+    }
+
+    public void addListener(VisibleViewSizeChangeListener listener) {
+        if (!sizeListeners.contains(listener, true)) sizeListeners.add(listener);
+    }
+
+    public void removeListener(VisibleViewSizeChangeListener listener) {
+        sizeListeners.removeValue(listener, true);
+    }
+
+    public void addKeyboardHeightListener(KeyboardHeightListener listener) {
+        if (!keyboardListeners.contains(listener, true)) keyboardListeners.add(listener);
+    }
+
+    public void removeKeyboardHeightListener(KeyboardHeightListener listener) {
+        keyboardListeners.removeValue(listener, true);
+    }
+
+    /** Any thread */
+    public void sizeChanged(float width, float height) {
+        synchronized (this) {
+            this.width = width;
+            this.height = height;
+        }
+        post();
+    }
+
+    /** Any thread */
+    public void keyboardHeightChanged(float keyboardHeight, long timeMillis) {
+        synchronized (this) {
+            this.keyboardHeight = keyboardHeight;
+            this.keyboardTimeMillis = timeMillis;
+        }
+        post();
+    }
+
+    public synchronized float getWidth() {
+        return width;
+    }
+
+    public synchronized float getHeight() {
+        return height;
+    }
+
+    public synchronized float getKeyboardHeight() {
+        return keyboardHeight;
+    }
+
+    private void post() {
+        synchronized (this) {
+            //not up yet, the next change after startup delivers the latest values
+            if (posted || Gdx.app == null) return;
+            posted = true;
+        }
+        Gdx.app.postRunnable(dispatch);
+    }
+
+    private void dispatch() {
+        float width, height, keyboardHeight;
+        long keyboardTimeMillis;
+        synchronized (this) {
+            posted = false;
+            width = this.width;
+            height = this.height;
+            keyboardHeight = this.keyboardHeight;
+            keyboardTimeMillis = this.keyboardTimeMillis;
+        }
+
+        if (width != deliveredWidth || height != deliveredHeight) {
+            deliveredWidth = width;
+            deliveredHeight = height;
+            VisibleViewSizeChangeListener[] listeners = sizeListeners.begin();
+            for (int i = 0, n = sizeListeners.size; i < n; i++)
+                listeners[i].onSizeChange(width, height);
+            sizeListeners.end();
+        }
+
+        float previousKeyboardHeight = deliveredKeyboardHeight;
+        if (keyboardHeight != previousKeyboardHeight) {
+            deliveredKeyboardHeight = keyboardHeight;
+            KeyboardHeightListener[] listeners = keyboardListeners.begin();
+            for (int i = 0, n = keyboardListeners.size; i < n; i++) {
+                if (previousKeyboardHeight == 0) listeners[i].onKeyboardOpened(keyboardHeight, keyboardTimeMillis);
+                else if (keyboardHeight == 0) listeners[i].onKeyboardClosed(keyboardTimeMillis);
+                else listeners[i].onKeyboardHeightChanged(keyboardHeight, keyboardTimeMillis);
+            }
+            keyboardListeners.end();
+        }
+    }
+}
@@ -8,11 +8,24 @@ import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextFi
 
 public interface AndroidKeyboardFeedbackInterface {
 
-    void textChanged(CharSequence text, int cursorPosition, int selectionEnd);
+    /** @param revision the text revision the EditText content was based on. Anything older than the
+     * latest revision sent with {@link AndroidTextInputInterface#setText(CharSequence, int, int)} is stale. */
+    void textChanged(CharSequence text, int cursorPosition, int selectionEnd, int revision);
+
+    /** Incremental version of {@link #textChanged(CharSequence, int, int, int)}: text in [start, end) was replaced.
+     * Cursor, selection and composing positions are in the new text, composing start/end are -1 when the
+     * IME is not composing. */
+    void textReplaced(int start, int end, CharSequence replacement, int cursorPosition, int selectionEnd,
+                      int composingStart, int composingEnd, int revision);
+
+    /** The IME's action key was pressed instead of entering a newline.
+     * @param next true for the Next action, false for Done and any other action */
+    void editorAction(boolean next);
 
     /** Used for initialising the EditText only */
     String getText();
     int getCursorPosition();
+    int getTextRevision();
     CalTextField.TextFieldStyle getStyle();
 
 }
@@ -6,12 +6,21 @@ package com.calanti.androidnativekeyboardinputtest.interfaces.android;
 
 public interface AndroidTextInputInterface {
 
-    /** Request the keyboard for the specific TextField/TextArea */
+    /** Request the keyboard for the specific TextField/TextArea. Called on the GL thread, the field's text, cursor and
+     * revision are read right away, later changes follow as {@link #setText}/{@link #setSelection} commands. */
     void requestKeyboard(AndroidKeyboardFeedbackInterface textField);
 
+    /** True if a physical keyboard is attached. Its key events then go straight to the gdx input processor
+     * (TextField keyDown/keyTyped) and the native EditText bridge is only used for soft keyboard input. */
+    boolean isHardwareKeyboardConnected();
+
     /** Force hide the keyboard, e.g. when the user unfocuses the TextField */
     void forceHideKeyboard();
 
+    /** Hide the keyboard for a pause, keeping the native copy of the text. A later {@link #requestKeyboard} for the same
+     * field with the same text (and revision) then rebinds without copying the text again. */
+    void suspendKeyboard();
+
     /** Tell the Android app we detected the keyboard closing through non-catchable methods (such as back-button pressed) */
     void keyboardHideDetected();
 
@@ -19,6 +28,8 @@ public interface AndroidTextInputInterface {
 
     void setSelection(int start, int end);
 
-    /** Force a (reverse) change of text in the EditText (for example when using Cut/Paste/Delete) */
-    void setText(CharSequence text, int cursorPosition);
+    /** Force a (reverse) change of text in the EditText (for example when using Cut/Paste/Delete).
+     * The TextField has already applied the change itself, so it is not echoed back.
+     * @param revision a new, higher text revision. EditText changes based on older revisions are dropped. */
+    void setText(CharSequence text, int cursorPosition, int revision);
 }
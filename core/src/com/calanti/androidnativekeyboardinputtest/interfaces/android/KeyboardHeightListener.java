@@ -0,0 +1,13 @@
+package com.calanti.androidnativekeyboardinputtest.interfaces.android;
+
+/** Debounced soft keyboard open/close/height events, see {@link VisibleView#addKeyboardHeightListener}.
+ * Heights are in screen pixels, timestamps are the (uptime) milliseconds at which the layout reporting the
+ * change happened, not when the debounce let it through.
+ * @Author: calanti
+ */
+
+public interface KeyboardHeightListener {
+    void onKeyboardOpened(float height, long timeMillis);
+    void onKeyboardHeightChanged(float height, long timeMillis);
+    void onKeyboardClosed(long timeMillis);
+}
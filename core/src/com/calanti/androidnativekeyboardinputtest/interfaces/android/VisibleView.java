@@ -3,12 +3,21 @@ package com.calanti.androidnativekeyboardinputtest.interfaces.android;
 /** Used to detect a change in Android's visible screen area.
  * This is used to make a pretty good guess of when the keyboard has been opened/closed
  * via non-catchable methods (such as back-button pressed)
+ *
+ * The platform calls the onXxxChange methods from its own thread, listeners are always notified on the GL thread,
+ * at most once per frame with the latest values.
  * @Author: calanti.games@gmail.com
  */
 
 public interface VisibleView {
     void onSizeChange(float width, float height);
-    void setListener(VisibleViewSizeChangeListener sizeChangeListener);
+    void addListener(VisibleViewSizeChangeListener sizeChangeListener);
+    void removeListener(VisibleViewSizeChangeListener sizeChangeListener);
+    /** Called by the platform once a keyboard height has been stable for a short while, 0 when closed */
+    void onKeyboardHeightChange(float keyboardHeight, long timeMillis);
+    void addKeyboardHeightListener(KeyboardHeightListener keyboardHeightListener);
+    void removeKeyboardHeightListener(KeyboardHeightListener keyboardHeightListener);
+    float getKeyboardHeight();
     float getWidth();
     float getHeight();
 }
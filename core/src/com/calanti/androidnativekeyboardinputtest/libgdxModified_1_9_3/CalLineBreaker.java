@@ -0,0 +1,90 @@
+package com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3;
+
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.utils.IntArray;
+
+/** calanti addition - the word wrapping of {@link CalTextArea}, measuring with the font data directly instead of a
+ * GlyphLayout per prefix. It only reads the text and font metrics, touches no Pools and allocates nothing beyond the
+ * output array, so it may run on any thread as long as the font is not modified meanwhile; see
+ * {@link com.calanti.androidnativekeyboardinputtest.ui.TextAreaPrelayout}.
+ *
+ * Widths follow GlyphLayout for a single run without markup: the first glyph's left bearing and the last glyph's
+ * trailing space are trimmed, kerning applies between neighbours.
+ * @author calanti
+ */
+
+public final class CalLineBreaker {
+
+    /** Which characters make up words, lines break after the last character that does not. A text area passes its
+     * {@link CalTextField#isWordCharacter(char)} (see {@link CalTextArea#getWordCharacters()}), so wrapping and the
+     * cursor's word jumps agree. May be called from a worker thread. */
+    public interface WordCharacters {
+        boolean isWordCharacter(char c);
+    }
+
+    private CalLineBreaker() {
+    }
+
+    /** Breaks the text into lines no wider than maxWidth, at newlines and else after the last non word character.
+     * @param lines cleared, then receives the start and end index of each line, in pairs */
+    public static void breakLines(BitmapFont.BitmapFontData data, CharSequence text, float maxWidth, WordCharacters words,
+                                  IntArray lines) {
+        lines.clear();
+        int length = text.length();
+        int lineStart = 0;
+        int lastSpace = 0;
+        float advance = 0;
+        BitmapFont.Glyph last = null;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == CalTextField.ENTER_DESKTOP || c == CalTextField.ENTER_ANDROID) {
+                lines.add(lineStart);
+                lines.add(i);
+                lineStart = i + 1;
+                last = null;
+                continue;
+            }
+            if (!words.isWordCharacter(c)) lastSpace = i;
+
+            BitmapFont.Glyph glyph = glyph(data, c);
+            if (glyph == null) continue;
+            advance = last == null ? firstAdvance(data, glyph) : advance + (last.xadvance + last.getKerning(c)) * data.scaleX;
+            last = glyph;
+
+            if (advance + lastWidth(data, glyph) > maxWidth) {
+                if (lineStart >= lastSpace) lastSpace = i - 1;
+                lines.add(lineStart);
+                lines.add(lastSpace + 1);
+                lineStart = lastSpace + 1;
+                lastSpace = lineStart;
+
+                //measure what moved to the new line
+                last = null;
+                for (int j = lineStart; j <= i; j++) {
+                    char d = text.charAt(j);
+                    BitmapFont.Glyph moved = glyph(data, d);
+                    if (moved == null) continue;
+                    advance = last == null ? firstAdvance(data, moved) : advance + (last.xadvance + last.getKerning(d)) * data.scaleX;
+                    last = moved;
+                }
+            }
+        }
+        if (lineStart < length) {
+            lines.add(lineStart);
+            lines.add(length);
+        }
+    }
+
+    private static BitmapFont.Glyph glyph(BitmapFont.BitmapFontData data, char c) {
+        BitmapFont.Glyph glyph = data.getGlyph(c);
+        return glyph != null ? glyph : data.missingGlyph;
+    }
+
+    private static float firstAdvance(BitmapFont.BitmapFontData data, BitmapFont.Glyph glyph) {
+        return glyph.fixedWidth ? 0 : -glyph.xoffset * data.scaleX - data.padLeft;
+    }
+
+    private static float lastWidth(BitmapFont.BitmapFontData data, BitmapFont.Glyph glyph) {
+        return (glyph.fixedWidth ? glyph.xadvance : glyph.xoffset + glyph.width - data.padRight) * data.scaleX;
+    }
+}
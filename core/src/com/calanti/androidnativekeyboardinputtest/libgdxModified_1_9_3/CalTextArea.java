@@ -5,7 +5,6 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
-import com.badlogic.gdx.graphics.g2d.GlyphLayout;
 import com.badlogic.gdx.scenes.scene2d.InputEvent;
 import com.badlogic.gdx.scenes.scene2d.InputListener;
 import com.badlogic.gdx.scenes.scene2d.Stage;
@@ -13,8 +12,8 @@ import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import com.badlogic.gdx.scenes.scene2d.utils.Drawable;
 import com.badlogic.gdx.utils.Align;
 import com.badlogic.gdx.utils.Array;
-import com.badlogic.gdx.utils.Pool;
-import com.badlogic.gdx.utils.Pools;
+import com.badlogic.gdx.utils.IntArray;
+import com.calanti.androidnativekeyboardinputtest.bridge.KeyboardSnapshot;
 import com.calanti.androidnativekeyboardinputtest.interfaces.android.AndroidTextInputInterface;
 
 /** A multiple-line text input field, entirely based on {@link com.badlogic.gdx.scenes.scene2d.ui.TextField} */
@@ -39,6 +38,16 @@ public class CalTextArea extends CalTextField {
     }
 
     private Array<LineMeta> lineMetas;
+    /** calanti addition - {@link #isWordCharacter(char)} for {@link CalLineBreaker} */
+    private final CalLineBreaker.WordCharacters wordCharacters = new CalLineBreaker.WordCharacters() {
+        @Override
+        public boolean isWordCharacter (char c) {
+            return CalTextArea.this.isWordCharacter(c);
+        }
+    };
+
+    /** calanti addition - scratch output of {@link CalLineBreaker} */
+    private IntArray lineBreaks;
 
     /** Last text processed. This attribute is used to avoid unnecessary computations while calculating offsets **/
     private String lastText;
@@ -79,6 +88,7 @@ public class CalTextArea extends CalTextField {
         writeEnters = true;
         //linesBreak = new IntArray();
         lineMetas = new Array<LineMeta>();
+        lineBreaks = new IntArray();
         cursorLine = 0;
         firstLineShowing = 0;
         moveOffset = -1;
@@ -87,6 +97,8 @@ public class CalTextArea extends CalTextField {
 
     @Override
     protected int letterUnderCursor (float x) {
+        /** calanti addition - also brings back a line index dropped by trimMemory */
+        calculateOffsets();
         if (lineMetas.size > 0) {
             if (cursorLine >= lineMetas.size) {
                 return text.length();
@@ -145,6 +157,7 @@ public class CalTextArea extends CalTextField {
 
     /** Moves the cursor to the given number line **/
     public void moveCursorLine (int line) {
+        validateDisplayText();
         if (line < 0) {
             cursorLine = 0;
             cursor = 0;
@@ -299,45 +312,44 @@ public class CalTextArea extends CalTextField {
         if (!this.text.equals(lastText)) {
             //bug.out("text not same!!!!");
             this.lastText = text;
-            BitmapFont font = style.font;
-            float maxWidthLine = this.getWidth()
-                    - (style.background != null ? style.background.getLeftWidth() + style.background.getRightWidth() : 0);
-            lineMetas.clear();
-            int lineStart = 0;
-            int lastSpace = 0;
-            char lastCharacter;
-            Pool<GlyphLayout> layoutPool = Pools.get(GlyphLayout.class);
-            GlyphLayout layout = layoutPool.obtain();
-            for (int i = 0; i < text.length(); i++) {
-                lastCharacter = text.charAt(i);
-                if (lastCharacter == ENTER_DESKTOP || lastCharacter == ENTER_ANDROID) {
-                    lineMetas.add(new LineMeta(lineStart, i));
-                    lineStart = i + 1;
-                } else {
-                    lastSpace = (continueCursor(i, 0) ? lastSpace : i);
-                    layout.setText(font, text.subSequence(lineStart, i + 1));
-                    if (layout.width > maxWidthLine) {
-                        if (lineStart >= lastSpace) {
-                            lastSpace = i - 1;
-                        }
-                        lineMetas.add(new LineMeta(lineStart, lastSpace+1));
+            /** calanti addition - shared with TextAreaPrelayout, measures without a GlyphLayout per character */
+            CalLineBreaker.breakLines(style.font.getData(), text, getWrapWidth(), wordCharacters, lineBreaks);
+            applyLineBreaks(lineBreaks);
+        }
+    }
 
-                        lineStart = lastSpace + 1;
-                        lastSpace = lineStart;
-                    }
-                }
-            }
-            layoutPool.free(layout);
-            // Add last line
-            if (lineStart < text.length()) {
-                lineMetas.add(new LineMeta(lineStart, text.length()));
-            }
-            if(((TextAreaStyle) style).autoSizeWithLines){
-                setPrefRows(getLines());
-                invalidateHierarchy();
-            }
-            showCursor();
+    /** calanti addition - the word characters lines are wrapped at: {@link #isWordCharacter(char)}, so an override
+     * changes wrap points and word jumps alike. It is also called from TextAreaPrelayout's workers, keep it stateless. */
+    public CalLineBreaker.WordCharacters getWordCharacters () {
+        return wordCharacters;
+    }
+
+    /** calanti addition - the width lines are wrapped to */
+    public float getWrapWidth () {
+        return getWidth() - (style.background != null ? style.background.getLeftWidth() + style.background.getRightWidth() : 0);
+    }
+
+    /** calanti addition - installs line breaks computed ahead of time with {@link CalLineBreaker}, e.g. on a worker
+     * thread by {@link com.calanti.androidnativekeyboardinputtest.ui.TextAreaPrelayout}. GL thread only.
+     * @return false if the text or wrap width changed since they were computed, calculateOffsets then wraps itself */
+    public boolean installLineBreaks (String text, float wrapWidth, IntArray lines) {
+        if (!text.equals(this.text) || wrapWidth != getWrapWidth()) return false;
+        if (!text.equals(lastText)) {
+            lastText = text;
+            applyLineBreaks(lines);
+        }
+        return true;
+    }
+
+    private void applyLineBreaks (IntArray lines) {
+        lineMetas.clear();
+        for (int i = 0; i < lines.size; i += 2)
+            lineMetas.add(new LineMeta(lines.get(i), lines.get(i + 1)));
+        if(((TextAreaStyle) style).autoSizeWithLines){
+            setPrefRows(getLines());
+            invalidateHierarchy();
         }
+        showCursor();
     }
 
     @Override
@@ -372,16 +384,16 @@ public class CalTextArea extends CalTextField {
     }
 
     @Override
-    public void textChanged(CharSequence text, int cursorPosition, int selectionEnd) {
-        super.textChanged(text, cursorPosition, selectionEnd);
+    protected void androidTextApplied() {
         /** calanti addition - limit number of lines */
         if(((TextAreaStyle) style).maxLines != 0) {
             calculateOffsets();
-            if (lineMetas.size > ((TextAreaStyle) style).maxLines +  (newLineAtEnd() ? 0 : 1)) {
-                StringBuilder sb = new StringBuilder(text);
-                sb.deleteCharAt(cursorPosition - 1);
+            int at = hasSelection ? Math.min(cursor, selectionStart) : cursor;
+            if (at > 0 && lineMetas.size > ((TextAreaStyle) style).maxLines +  (newLineAtEnd() ? 0 : 1)) {
+                StringBuilder sb = new StringBuilder(this.text);
+                sb.deleteCharAt(at - 1);
                 //if(cursorPosition == text.length()) cursorPosition--;
-                androidTextInputInterface.setText(sb.toString(), cursorPosition - 1);
+                setAndroidText(sb, at - 1);
             }
         }
 
@@ -408,6 +420,50 @@ public class CalTextArea extends CalTextField {
         return firstLineShowing;
     }
 
+    /** calanti addition - also drops the line index, calculateOffsets rebuilds it */
+    @Override
+    public int trimMemory () {
+        if (isKeyboardFocus()) return 0;
+        int bytes = super.trimMemory();
+        //LineMeta object (header + 2 ints) and its reference
+        bytes += lineMetas.size * 28 + (lineMetas.items.length - lineMetas.size) * 4;
+        lineMetas.clear();
+        lineMetas.shrink();
+        lastText = null;
+        return bytes;
+    }
+
+    /** calanti addition - also keeps the scroll position */
+    @Override
+    public void saveSnapshot(KeyboardSnapshot snapshot) {
+        super.saveSnapshot(snapshot);
+        snapshot.scrollLine = firstLineShowing;
+    }
+
+    @Override
+    protected int getSnapshotInputType() {
+        if (((TextAreaStyle) style).androidKeyboardCarriageReturn) return KeyboardSnapshot.INPUT_MULTI_LINE;
+        return super.getSnapshotInputType();
+    }
+
+    @Override
+    public boolean restoreSnapshot(KeyboardSnapshot snapshot) {
+        if (!super.restoreSnapshot(snapshot)) return false;
+        //calculateOffsets only scrolls as far as needed to show the cursor, so this sticks when the cursor is in view
+        firstLineShowing = Math.max(0, snapshot.scrollLine);
+        updateCurrentLine();
+        return true;
+    }
+
+    /** calanti addition - also scrolls back to the top, calculateOffsets then scrolls to the cursor */
+    @Override
+    public void rebind(String text, int cursorPosition, int selectionStart) {
+        super.rebind(text, cursorPosition, selectionStart);
+        firstLineShowing = 0;
+        moveOffset = -1;
+        updateCurrentLine();
+    }
+
     public int getLinesShowing () {
         return linesShowing;
     }
@@ -441,6 +497,8 @@ public class CalTextArea extends CalTextField {
             if (background != null) {
                 y -= background.getTopHeight();
             }
+            /** calanti addition - the line count below needs the line index, trimMemory may have dropped it */
+            calculateOffsets();
 
             cursorLine = (int)Math.floor((height - y) / font.getLineHeight()) + firstLineShowing;
             cursorLine = Math.max(0, Math.min(cursorLine, getLines() - 1));
@@ -498,9 +556,23 @@ public class CalTextArea extends CalTextField {
         @Override
         public boolean keyTyped (InputEvent event, char character) {
             if(character == ENTER_ANDROID || character == ENTER_DESKTOP){
+                if (disabled) return false;
+                Stage stage = getStage();
+                if (stage == null || stage.getKeyboardFocus() != CalTextArea.this) return false;
+                /** calanti addition - a typed newline is an edit like any other: max length, change event, undo */
+                String oldText = text;
+                int oldCursor = cursor;
                 if(hasSelection) cursor = delete(false);
-                text = insert(cursor++, character+"", text);
+                if (withinMaxLength(text.length())) text = insert(cursor++, character+"", text);
+                if (changeText(oldText, text)) {
+                    long time = System.currentTimeMillis();
+                    if (time - 750 > lastChangeTime) undoText = oldText;
+                    lastChangeTime = time;
+                } else
+                    cursor = oldCursor;
                 updateDisplayText();
+                showCursor();
+                if (listener != null) listener.keyTyped(CalTextArea.this, character);
                 return true;
             }
             boolean result = super.keyTyped(event, character);
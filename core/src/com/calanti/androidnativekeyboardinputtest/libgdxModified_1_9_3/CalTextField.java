@@ -43,6 +43,8 @@ import com.badlogic.gdx.utils.FloatArray;
 import com.badlogic.gdx.utils.Pools;
 import com.badlogic.gdx.utils.TimeUtils;
 import com.badlogic.gdx.utils.Timer;
+import com.calanti.androidnativekeyboardinputtest.bridge.KeyboardLog;
+import com.calanti.androidnativekeyboardinputtest.bridge.KeyboardSnapshot;
 import com.calanti.androidnativekeyboardinputtest.interfaces.android.AndroidKeyboardFeedbackInterface;
 import com.calanti.androidnativekeyboardinputtest.interfaces.android.AndroidTextInputInterface;
 
@@ -93,6 +95,9 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
     static private final Vector2 tmp2 = new Vector2();
     static private final Vector2 tmp3 = new Vector2();
 
+    /** calanti addition - change event dispatch modes, see {@link #setChangeDispatch(int, float)} */
+    static public final int DISPATCH_IMMEDIATE = 0, DISPATCH_FRAME = 1, DISPATCH_DEBOUNCE = 2, DISPATCH_THROTTLE = 3;
+
     static public float keyRepeatInitialTime = 0.4f;
     static public float keyRepeatTime = 0.1f;
 
@@ -137,6 +142,32 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
     /** calanti addition */
     private boolean focused;
     protected AndroidTextInputInterface androidTextInputInterface;
+    /** Revision of the last text pushed to the EditText, see {@link #setAndroidText(CharSequence, int)} */
+    private int textRevision;
+    /** Request the keyboard as soon as a touch lands, see {@link #setKeyboardOnTouchDown(boolean)} */
+    private boolean keyboardOnTouchDown;
+    /** Region the IME is still composing (underlined word for suggestions), -1 if none */
+    int composingStart = -1, composingEnd = -1;
+    /** Display text, glyph positions and layout are out of date (text changed or {@link #trimMemory()} dropped them),
+     * rebuilt by {@link #validateDisplayText()} the first time something reads them */
+    boolean displayTextDirty = true;
+    /** How text edits reach change listeners, see {@link #setChangeDispatch(int, float)} */
+    private int changeDispatch = DISPATCH_IMMEDIATE;
+    private long changeWindowMillis;
+    /** Text before the first edit not dispatched yet, null if none is pending */
+    private String pendingChangeText;
+    private int pendingEdits;
+    private long lastEditMillis, lastDispatchMillis;
+    /** Nesting depth of {@link #beginBatchEdit()}, and the state the outermost batch started from */
+    private int batchDepth;
+    private String batchText;
+    private int batchCursor, batchSelectionStart;
+    private boolean batchHasSelection;
+    /** Inputs of the last {@link #calculateOffsets()}, which is skipped while they are unchanged */
+    private boolean offsetsValid;
+    private int offsetsCursor, offsetsSelectionStart, offsetsAlign;
+    private boolean offsetsHasSelection;
+    private float offsetsVisibleWidth, offsetsRenderOffset;
 
     public CalTextField(String text, Skin skin) {
         this(text, skin.get(TextFieldStyle.class));
@@ -168,10 +199,13 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
     private class AndroidOnscreenKeyboard implements OnscreenKeyboard {
         @Override
         public void show(boolean visible) {
-            if(visible){
+            if(visible && !androidTextInputInterface.isHardwareKeyboardConnected()){
                 androidTextInputInterface.requestKeyboard(CalTextField.this);
                 updateDisplayText();
-            } else androidTextInputInterface.forceHideKeyboard();
+            } else {
+                //physical keyboard: make sure the EditText lets go of focus, keys then reach the gdx input processor
+                androidTextInputInterface.forceHideKeyboard();
+            }
         }
     }
 
@@ -184,6 +218,7 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
     }
 
     protected int letterUnderCursor (float x) {
+        validateDisplayText();
         x -= textOffset + fontOffset - style.font.getData().cursorX - glyphPositions.get(visibleTextStart);
         int n = this.glyphPositions.size;
         float[] glyphPositions = this.glyphPositions.items;
@@ -247,6 +282,7 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
         textHeight = style.font.getCapHeight() - style.font.getDescent() * 2;
         /** calanti addition - seems getLineHeight is more reliable? */
         //textHeight = style.font.getLineHeight();
+        invalidateDisplayText();
         invalidateHierarchy();
     }
 
@@ -257,8 +293,13 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
     }
 
     protected void calculateOffsets () {
+        validateDisplayText();
         float visibleWidth = getWidth();
         if (style.background != null) visibleWidth -= style.background.getLeftWidth() + style.background.getRightWidth();
+        /** calanti addition - nothing moved since the last frame */
+        if (offsetsValid && cursor == offsetsCursor && visibleWidth == offsetsVisibleWidth && renderOffset == offsetsRenderOffset
+                && hasSelection == offsetsHasSelection && selectionStart == offsetsSelectionStart && textHAlign == offsetsAlign)
+            return;
 
         int glyphCount = glyphPositions.size;
         float[] glyphPositions = this.glyphPositions.items;
@@ -309,6 +350,14 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
             if (renderOffset == 0) selectionX += textOffset;
             selectionWidth = maxX - minX - style.font.getData().cursorX;
         }
+
+        offsetsValid = true;
+        offsetsCursor = cursor;
+        offsetsVisibleWidth = visibleWidth;
+        offsetsRenderOffset = renderOffset;
+        offsetsHasSelection = hasSelection;
+        offsetsSelectionStart = selectionStart;
+        offsetsAlign = textHAlign;
     }
 
     @Override
@@ -417,6 +466,17 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
     }
 
     void updateDisplayText () {
+        /** calanti addition - a batch edit lays out once, when the field is next drawn after it */
+        if (batchDepth > 0) {
+            displayTextDirty = true;
+            return;
+        }
+        buildDisplayText();
+    }
+
+    private void buildDisplayText () {
+        displayTextDirty = false;
+        offsetsValid = false;
         BitmapFont font = style.font;
         BitmapFont.BitmapFontData data = font.getData();
         String text = this.text;
@@ -466,6 +526,53 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
         if (selectionStart > newDisplayText.length()) selectionStart = textLength;
     }
 
+    /** calanti addition - marks the display text, glyph positions and layout out of date without rebuilding them, so
+     * fields that are never drawn or touched never lay out their text. */
+    protected void invalidateDisplayText () {
+        displayTextDirty = true;
+    }
+
+    /** calanti addition - rebuilds what {@link #invalidateDisplayText()} or {@link #trimMemory()} left out of date, before
+     * anything reads it. */
+    protected void validateDisplayText () {
+        if (displayTextDirty) buildDisplayText();
+    }
+
+    boolean isKeyboardFocus () {
+        Stage stage = getStage();
+        return stage != null && stage.getKeyboardFocus() == this;
+    }
+
+    /** calanti addition - drops the render data derived from the text (glyph positions, glyph runs, display and password
+     * text), which otherwise stays as large as the longest text the field ever held. It is rebuilt from the text the next
+     * time the field is drawn, touched or navigated. Does nothing while the field has keyboard focus.
+     * @return estimated number of bytes released */
+    public int trimMemory () {
+        if (isKeyboardFocus()) return 0;
+
+        int bytes = glyphPositions.items.length * 4;
+        glyphPositions.clear();
+        glyphPositions.shrink();
+
+        //not freed to the pool, that would just keep the arrays alive there
+        Array<GlyphLayout.GlyphRun> runs = layout.runs;
+        for (int i = 0; i < runs.size; i++)
+            bytes += runs.get(i).glyphs.items.length * 4 + runs.get(i).xAdvances.items.length * 4;
+        runs.clear();
+        runs.shrink();
+        layout.width = layout.height = 0;
+
+        if (passwordBuffer != null) {
+            bytes += passwordBuffer.capacity() * 2;
+            passwordBuffer = null;
+        }
+        if (displayText != null) bytes += displayText.length() * 2;
+        displayText = "";
+
+        displayTextDirty = true;
+        return bytes;
+    }
+
     private void blink () {
         if (!Gdx.graphics.isContinuousRendering()) {
             cursorOn = true;
@@ -522,7 +629,7 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
             changeText(text, insert(cursor, content, text));
         else
             text = insert(cursor, content, text);
-        updateDisplayText();
+        invalidateDisplayText();
         cursor += content.length();
     }
 
@@ -564,15 +671,11 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
             stage.setKeyboardFocus(textField);
             /** calanti addition - send EditText focus to next */
             if(androidTextInputInterface != null){
-                androidTextInputInterface.requestKeyboard(textField);
+                textField.keyboard.show(true);
             }
         } else {
-            /** calanti addition - also tell stage to unfocus */
-            if(androidTextInputInterface != null){
-                androidTextInputInterface.forceHideKeyboard();
-            } else {
-                Gdx.input.setOnscreenKeyboardVisible(false);
-            }
+            /** calanti addition - also tell stage to unfocus, the keyboard in use (native or in-game) hides itself */
+            keyboard.show(false);
             stage.unfocusAll();
         }
     }
@@ -622,6 +725,18 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
         this.focusTraversal = focusTraversal;
     }
 
+    /** calanti addition - if true, touching an unfocused field requests the soft keyboard straight away instead of on
+     * tap-up, so the IME starts coming in while the finger is still down. The request is taken back if the touch turns
+     * into a drag or is cancelled (e.g. by a ScrollPane), the keyboard then goes back to the focused field or hides.
+     * Off by default, since a scroll starting on a field can briefly show the keyboard. */
+    public void setKeyboardOnTouchDown (boolean keyboardOnTouchDown) {
+        this.keyboardOnTouchDown = keyboardOnTouchDown;
+    }
+
+    public boolean isKeyboardOnTouchDown () {
+        return keyboardOnTouchDown;
+    }
+
     /** @return May be null. */
     public String getMessageText () {
         return messageText;
@@ -665,13 +780,86 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
     boolean changeText (String oldText, String newText) {
         if (newText.equals(oldText)) return false;
         text = newText;
-        ChangeListener.ChangeEvent changeEvent = Pools.obtain(ChangeListener.ChangeEvent.class);
-        boolean cancelled = fire(changeEvent);
+        boolean cancelled = !textEdited(oldText);
         text = cancelled ? oldText : newText;
-        Pools.free(changeEvent);
         return !cancelled;
     }
 
+    /** calanti addition - every edit, typed or from the Android keyboard, ends up here once applied.
+     * Fires a {@link TextChangeEvent} now or records it for {@link #act(float)}, depending on the dispatch mode.
+     * @return false if an immediate listener cancelled the edit */
+    boolean textEdited (String oldText) {
+        if (oldText == null || oldText.equals(text)) return true;
+        if (changeDispatch == DISPATCH_IMMEDIATE && batchDepth == 0) return !fireTextChange(oldText, 1);
+
+        if (pendingChangeText == null) {
+            pendingChangeText = oldText;
+            pendingEdits = 0;
+        }
+        pendingEdits++;
+        lastEditMillis = TimeUtils.millis();
+        if (Gdx.graphics != null && !Gdx.graphics.isContinuousRendering()) Gdx.graphics.requestRendering();
+        return true;
+    }
+
+    /** @return true if cancelled */
+    private boolean fireTextChange (String oldText, int edits) {
+        TextChangeEvent changeEvent = Pools.obtain(TextChangeEvent.class);
+        changeEvent.set(oldText, text, edits);
+        boolean cancelled = fire(changeEvent);
+        Pools.free(changeEvent);
+        return cancelled;
+    }
+
+    /** calanti addition - sets how text edits are delivered to {@link ChangeListener}s, which receive a
+     * {@link TextChangeEvent} with the changed range either way:
+     * {@link #DISPATCH_IMMEDIATE} (default) fires on every edit and lets listeners cancel it;
+     * {@link #DISPATCH_FRAME} fires once per frame for all edits of that frame;
+     * {@link #DISPATCH_DEBOUNCE} fires once no edit happened for the window;
+     * {@link #DISPATCH_THROTTLE} fires at most once per window while edits keep coming.
+     * Deferred events are fired from {@link #act(float)}, they cover every edit since the last one and cannot be
+     * cancelled. */
+    public void setChangeDispatch (int mode, float windowSeconds) {
+        if (mode < DISPATCH_IMMEDIATE || mode > DISPATCH_THROTTLE) throw new IllegalArgumentException("unknown mode: " + mode);
+        flushChange();
+        changeDispatch = mode;
+        changeWindowMillis = (long) (windowSeconds * 1000);
+    }
+
+    public int getChangeDispatch () {
+        return changeDispatch;
+    }
+
+    /** calanti addition - fires the pending deferred change event now, e.g. before reading the text on submit. */
+    public void flushChange () {
+        String oldText = pendingChangeText;
+        if (oldText == null) return;
+        pendingChangeText = null;
+        lastDispatchMillis = TimeUtils.millis();
+        fireTextChange(oldText, pendingEdits);
+    }
+
+    @Override
+    public void act (float delta) {
+        super.act(delta);
+        if (pendingChangeText == null) return;
+        long now = TimeUtils.millis();
+        boolean due;
+        switch (changeDispatch) {
+            case DISPATCH_DEBOUNCE:
+                due = now - lastEditMillis >= changeWindowMillis;
+                break;
+            case DISPATCH_THROTTLE:
+                due = now - lastDispatchMillis >= changeWindowMillis;
+                break;
+            default:
+                due = true;
+        }
+        if (due) flushChange();
+        //keep frames coming until the window passed
+        else if (!Gdx.graphics.isContinuousRendering()) Gdx.graphics.requestRendering();
+    }
+
     /** If false, methods that change the text will not fire {@link ChangeListener.ChangeEvent}, the event will be fired only when user changes
      * the text. */
     public void setProgrammaticChangeEvents (boolean programmaticChangeEvents) {
@@ -682,6 +870,11 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
         return selectionStart;
     }
 
+    /** calanti addition */
+    public boolean hasSelection () {
+        return hasSelection;
+    }
+
     public String getSelection () {
         return hasSelection ? text.substring(Math.min(selectionStart, cursor), Math.max(selectionStart, cursor)) : "";
     }
@@ -706,7 +899,7 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
         this.selectionStart = selectionStart;
         cursor = selectionEnd;
         /** calanti addition - mimic selection in EditText */
-        if(androidTextInputInterface != null) androidTextInputInterface.setSelection(selectionStart, selectionEnd);
+        if(androidTextInputInterface != null && batchDepth == 0) androidTextInputInterface.setSelection(selectionStart, selectionEnd);
     }
 
     public void selectAll () {
@@ -716,7 +909,7 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
     public void clearSelection () {
         hasSelection = false;
         /** calanti addition - mimic selection in EditText */
-        if(androidTextInputInterface != null) androidTextInputInterface.setSelection(cursor, cursor);
+        if(androidTextInputInterface != null && batchDepth == 0) androidTextInputInterface.setSelection(cursor, cursor);
 
     }
 
@@ -726,13 +919,19 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
         clearSelection();
         cursor = Math.min(cursorPosition, text.length());
         /** calanti addition - mimic selection in EditText */
-        if(androidTextInputInterface != null) androidTextInputInterface.setCursorPosition(cursor);
+        if(androidTextInputInterface != null && batchDepth == 0) androidTextInputInterface.setCursorPosition(cursor);
     }
 
     public int getCursorPosition () {
         return cursor;
     }
 
+    /** calanti addition - feeds a character from an in-game keyboard straight into the edit path, exactly as if it was
+     * typed (backspace, enter and focus traversal included). The field must have keyboard focus. */
+    public void typeCharacter (char character) {
+        inputListener.keyTyped(null, character);
+    }
+
     /** Default is an instance of {@link DefaultOnscreenKeyboard}. */
     public OnscreenKeyboard getOnscreenKeyboard () {
         return keyboard;
@@ -769,7 +968,7 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
      * @see #setPasswordCharacter(char) */
     public void setPasswordMode (boolean passwordMode) {
         this.passwordMode = passwordMode;
-        updateDisplayText();
+        invalidateDisplayText();
     }
 
     public boolean isPasswordMode () {
@@ -780,7 +979,7 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
      * (bullet). */
     public void setPasswordCharacter (char passwordCharacter) {
         this.passwordCharacter = passwordCharacter;
-        if (passwordMode) updateDisplayText();
+        if (passwordMode) invalidateDisplayText();
     }
 
     public void setBlinkTime (float blinkTime) {
@@ -796,6 +995,7 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
     }
 
     protected void moveCursor (boolean forward, boolean jump) {
+        validateDisplayText();
         int limit = forward ? text.length() : 0;
         int charOffset = forward ? 0 : -1;
         while ((forward ? ++cursor < limit : --cursor > limit) && jump) {
@@ -811,14 +1011,79 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
 
     /** calanti addition, feedback from Android EditText. */
     @Override
-    public void textChanged(CharSequence text, int cursorPosition, int selectionEnd) {
+    public void textChanged(CharSequence text, int cursorPosition, int selectionEnd, int revision) {
+        //the EditText hadn't seen our last setAndroidText yet, that write will overwrite it anyway
+        if(revision < textRevision) {
+            KeyboardLog.trace(KeyboardLog.EVENT_STALE_DROPPED, revision, textRevision);
+            return;
+        }
 
+        String oldText = this.text;
+        int oldCursor = cursor;
         if(text.length() > 0 && text.charAt(0) == ENTER_ANDROID){
-            androidTextInputInterface.setText(text.subSequence(1, text.length()), cursorPosition-1);
+            setAndroidText(text.subSequence(1, text.length()), cursorPosition-1);
+        } else {
+            composingStart = composingEnd = -1;
+            applyAndroidText(text.toString(), cursorPosition, selectionEnd);
+        }
+        androidTextEdited(oldText, oldCursor);
+    }
+
+    /** calanti addition, incremental feedback from an Android InputConnection. */
+    @Override
+    public void textReplaced(int start, int end, CharSequence replacement, int cursorPosition, int selectionEnd,
+                             int composingStart, int composingEnd, int revision) {
+        if(revision < textRevision) {
+            KeyboardLog.trace(KeyboardLog.EVENT_STALE_DROPPED, revision, textRevision);
+            return;
+        }
+
+        int length = text.length();
+        start = MathUtils.clamp(start, 0, length);
+        end = MathUtils.clamp(end, start, length);
+        String newText = replacement.length() == 0 && start == end ? text
+                : text.substring(0, start) + replacement + text.substring(end);
+
+        this.composingStart = composingStart;
+        this.composingEnd = composingEnd;
+
+        String oldText = text;
+        int oldCursor = cursor;
+        if(!writeEnters && (newText.indexOf(ENTER_ANDROID) >= 0 || newText.indexOf(ENTER_DESKTOP) >= 0)){
+            //single line field, strip the enter and correct the IME side
+            String stripped = newText.replace(String.valueOf(ENTER_ANDROID), "").replace(String.valueOf(ENTER_DESKTOP), "");
+            setAndroidText(stripped, cursorPosition - (newText.length() - stripped.length()));
+        } else {
+            applyAndroidText(newText, cursorPosition, selectionEnd);
+        }
+        androidTextEdited(oldText, oldCursor);
+    }
+
+    /** calanti addition, the IME's action key. Next moves focus like tab does, Done (or Next without focus traversal)
+     * delivers any deferred change event and lets go of focus and keyboard. */
+    @Override
+    public void editorAction(boolean next) {
+        Stage stage = getStage();
+        if (stage == null || stage.getKeyboardFocus() != this) return;
+        if (next && focusTraversal) {
+            next(false);
             return;
         }
+        flushChange();
+        keyboard.show(false);
+        stage.unfocus(this);
+    }
 
-        this.text = text.toString();
+    /** Reports an applied Android edit like a typed one; a cancelling listener gets the old text pushed back to the
+     * EditText, as the edit already happened there. */
+    private void androidTextEdited(String oldText, int oldCursor) {
+        if (!textEdited(oldText)) setAndroidText(oldText, oldCursor);
+    }
+
+    private void applyAndroidText(String newText, int cursorPosition, int selectionEnd) {
+        this.text = newText;
+        cursorPosition = MathUtils.clamp(cursorPosition, 0, newText.length());
+        selectionEnd = MathUtils.clamp(selectionEnd, 0, newText.length());
         this.selectionStart = cursorPosition;
         lastBlink = 0;
         cursorOn = false;
@@ -829,6 +1094,155 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
             cursor = cursorPosition;
         }
         updateDisplayText();
+        androidTextApplied();
+    }
+
+    /** calanti addition - called after text from the Android keyboard has been applied to this field,
+     * before it is drawn. */
+    protected void androidTextApplied() {
+    }
+
+    /** calanti addition - start of the text the IME is still composing, or -1. */
+    public int getComposingStart() {
+        return composingStart;
+    }
+
+    /** calanti addition - end of the text the IME is still composing, or -1. */
+    public int getComposingEnd() {
+        return composingEnd;
+    }
+
+    /** calanti addition - replaces the text from the core side and pushes it to the EditText under a new revision.
+     * The change is applied here straight away, so the EditText does not need to echo it back. */
+    protected void setAndroidText(CharSequence newText, int cursorPosition) {
+        text = newText.toString();
+        hasSelection = false;
+        composingStart = composingEnd = -1;
+        cursor = MathUtils.clamp(cursorPosition, 0, text.length());
+        selectionStart = cursor;
+        updateDisplayText();
+        //a batch edit sends the text once it ends
+        if(androidTextInputInterface != null && batchDepth == 0) androidTextInputInterface.setText(text, cursor, ++textRevision);
+    }
+
+    /** calanti addition - starts a batch of programmatic edits (setText, paste, setSelection, ...): until the matching
+     * {@link #endBatchEdit()} they only change the text and cursor, without laying out the text, talking to the native
+     * keyboard or firing immediate change events. Batches nest, only the outermost one commits. GL thread only. */
+    public void beginBatchEdit () {
+        if (batchDepth++ > 0) return;
+        batchText = text;
+        batchCursor = cursor;
+        batchSelectionStart = selectionStart;
+        batchHasSelection = hasSelection;
+    }
+
+    /** calanti addition - commits the outermost batch: a focused field sends its final text and selection to the native
+     * keyboard in one update, and in {@link #DISPATCH_IMMEDIATE} mode one change event covering the whole batch is fired
+     * (too late to be cancelled). The text is laid out when the field is next drawn. */
+    public void endBatchEdit () {
+        if (batchDepth == 0) throw new IllegalStateException("endBatchEdit without beginBatchEdit");
+        if (--batchDepth > 0) return;
+        String startText = batchText;
+        batchText = null;
+
+        if (androidTextInputInterface != null && isKeyboardFocus()) {
+            boolean textChanged = !text.equals(startText);
+            if (textChanged) {
+                composingStart = composingEnd = -1;
+                androidTextInputInterface.setText(text, cursor, ++textRevision);
+            }
+            if (hasSelection) {
+                if (textChanged || !batchHasSelection || selectionStart != batchSelectionStart || cursor != batchCursor)
+                    androidTextInputInterface.setSelection(selectionStart, cursor);
+            } else if (!textChanged && (batchHasSelection || cursor != batchCursor)) {
+                androidTextInputInterface.setCursorPosition(cursor);
+            }
+        }
+        if (changeDispatch == DISPATCH_IMMEDIATE) flushChange();
+    }
+
+    public boolean isBatchEdit () {
+        return batchDepth > 0;
+    }
+
+    @Override
+    public int getTextRevision() {
+        return textRevision;
+    }
+
+    /** calanti addition - lays out every glyph of the font once, so the first focus and typing into a field doesn't pay
+     * for glyph lookups, GlyphLayout pools and cold layout code. Call on the GL thread, e.g. when idle after startup. */
+    public static void prewarm(BitmapFont font) {
+        StringBuilder chars = new StringBuilder(256);
+        for (BitmapFont.Glyph[] page : font.getData().glyphs) {
+            if (page == null) continue;
+            for (BitmapFont.Glyph glyph : page) {
+                if (glyph != null && glyph.id > ' ' && glyph.id <= Character.MAX_VALUE) chars.append((char) glyph.id);
+            }
+        }
+        GlyphLayout layout = Pools.obtain(GlyphLayout.class);
+        layout.setText(font, chars);
+        Pools.free(layout);
+    }
+
+    /** calanti addition - records the keyboard session state of this field, see {@link #restoreSnapshot(KeyboardSnapshot)}. */
+    public void saveSnapshot(KeyboardSnapshot snapshot) {
+        snapshot.revision = textRevision;
+        snapshot.cursor = cursor;
+        snapshot.selectionStart = hasSelection ? selectionStart : cursor;
+        snapshot.selectionEnd = cursor;
+        snapshot.inputType = getSnapshotInputType();
+        snapshot.scrollLine = 0;
+        snapshot.textLength = text.length();
+        snapshot.textHash = text.hashCode();
+        snapshot.valid = true;
+    }
+
+    /** calanti addition - the kind of keyboard this field asks for, one of the KeyboardSnapshot INPUT_ kinds */
+    protected int getSnapshotInputType() {
+        return style.androidKeyboardNumericalOnly ? KeyboardSnapshot.INPUT_NUMERIC : KeyboardSnapshot.INPUT_TEXT;
+    }
+
+    /** calanti addition - puts the cursor and selection of a snapshot back, if the field still holds the same text (same
+     * revision, length and hash) and asks for the same kind of keyboard (a restyled field needs a fresh keyboard session,
+     * not the suspended one).
+     * @return false if the text or the keyboard kind changed since the snapshot, nothing is restored then */
+    public boolean restoreSnapshot(KeyboardSnapshot snapshot) {
+        if (!snapshot.matches(text, textRevision) || snapshot.inputType != getSnapshotInputType()) return false;
+        cursor = MathUtils.clamp(snapshot.cursor, 0, text.length());
+        selectionStart = MathUtils.clamp(snapshot.selectionStart, 0, text.length());
+        hasSelection = selectionStart != cursor;
+        return true;
+    }
+
+    /** calanti addition - replaces text, cursor and selection in one go, for recycling a field that does not have keyboard
+     * focus, see {@link com.calanti.androidnativekeyboardinputtest.ui.VirtualTextList}. Unlike {@link #setText(String)} it
+     * fires no change event, applies no filter and does not talk to the native keyboard, whose text belongs to the focused
+     * field. The text is laid out when the field is next drawn. */
+    public void rebind(String text, int cursorPosition, int selectionStart) {
+        if (text == null) text = "";
+        if (!text.equals(this.text)) {
+            this.text = text;
+            invalidateDisplayText();
+        }
+        cursor = MathUtils.clamp(cursorPosition, 0, text.length());
+        this.selectionStart = MathUtils.clamp(selectionStart, 0, text.length());
+        hasSelection = this.selectionStart != cursor;
+        composingStart = composingEnd = -1;
+        renderOffset = 0;
+        pendingChangeText = null;
+    }
+
+    /** calanti addition - restores a snapshot taken on pause, focuses this field and rebinds the keyboard.
+     * The keyboard skips copying the text if it still holds it from {@link AndroidTextInputInterface#suspendKeyboard()}.
+     * @return false if the field is not on a stage or {@link #restoreSnapshot(KeyboardSnapshot)} fails, nothing happens then */
+    public boolean resumeSnapshot(KeyboardSnapshot snapshot) {
+        Stage stage = getStage();
+        if (stage == null || !restoreSnapshot(snapshot)) return false;
+        stage.setKeyboardFocus(this);
+        keyboard.show(true);
+        if (hasSelection && androidTextInputInterface != null) androidTextInputInterface.setSelection(selectionStart, cursor);
+        return true;
     }
 
     class KeyRepeatTask extends Timer.Task {
@@ -839,6 +1253,57 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
         }
     }
 
+    /** calanti addition - the {@link ChangeListener.ChangeEvent} fired by text edits, with what changed since the previous
+     * event: oldText[start, oldEnd) was replaced by newText[start, newEnd). Only valid during the listener call. */
+    static public class TextChangeEvent extends ChangeListener.ChangeEvent {
+        public String oldText, newText;
+        public int start, oldEnd, newEnd;
+        /** Number of edits this event covers, more than 1 for deferred dispatch modes */
+        public int edits;
+
+        void set (String oldText, String newText, int edits) {
+            this.oldText = oldText;
+            this.newText = newText;
+            this.edits = edits;
+            int oldLength = oldText.length(), newLength = newText.length();
+            int prefix = 0, max = Math.min(oldLength, newLength);
+            while (prefix < max && oldText.charAt(prefix) == newText.charAt(prefix))
+                prefix++;
+            int suffix = 0;
+            max -= prefix;
+            while (suffix < max && oldText.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix))
+                suffix++;
+            start = prefix;
+            oldEnd = oldLength - suffix;
+            newEnd = newLength - suffix;
+        }
+
+        public String getRemoved () {
+            return oldText.substring(start, oldEnd);
+        }
+
+        public String getInserted () {
+            return newText.substring(start, newEnd);
+        }
+
+        @Override
+        public void reset () {
+            super.reset();
+            oldText = newText = null;
+        }
+    }
+
+    /** calanti addition - a ChangeListener for {@link TextChangeEvent}s of a CalTextField. */
+    static abstract public class TextChangeListener extends ChangeListener {
+        @Override
+        public void changed (ChangeEvent event, Actor actor) {
+            if (event instanceof TextChangeEvent && actor instanceof CalTextField)
+                textChanged((TextChangeEvent) event, (CalTextField) actor);
+        }
+
+        abstract public void textChanged (TextChangeEvent event, CalTextField field);
+    }
+
     /** Interface for listening to typed characters.
      * @author mzechner */
     static public interface TextFieldListener {
@@ -878,6 +1343,9 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
     /** Basic input listener for the text field */
     public class TextFieldClickListener extends ClickListener {
 
+        /** calanti addition - a keyboard request made on touchDown, waiting for the tap to confirm it */
+        private boolean keyboardRequested;
+
         /** calanti addition */
 
         public void clicked (InputEvent event, float x, float y){
@@ -885,9 +1353,12 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
                 if(!isFocused()){
                     Stage stage = getStage();
                     if (stage != null) stage.setKeyboardFocus(CalTextField.this);
-                    keyboard.show(true);
+                    //the keyboard request snapshots the cursor, so place it first
                     setCursorPosition(x, y);
                     selectionStart = cursor;
+                    //already requested on touchDown, the cursor above follows it
+                    if (keyboardRequested) keyboardRequested = false;
+                    else keyboard.show(true);
                 } else {
                     int count = getTapCount() % 4;
                     if (count == 0) clearSelection();
@@ -903,7 +1374,10 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
             if (!super.touchDown(event, x, y, pointer, button)) return false;
             if (pointer == 0 && button != 0) return false;
             if (disabled) return true;
-            if(!isFocused()) return true;
+            if(!isFocused()){
+                if (keyboardOnTouchDown) requestKeyboardEarly();
+                return true;
+            }
             setCursorPosition(x, y);
             selectionStart = cursor;
             hasSelection = true;
@@ -912,6 +1386,8 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
 
         public void touchDragged (InputEvent event, float x, float y, int pointer) {
             super.touchDragged(event, x, y, pointer);
+            //a drag or scroll rather than a tap
+            if (keyboardRequested && !inTapSquare()) cancelKeyboardRequest();
             if(!isFocused()) return;
             setCursorPosition(x, y);
             if(androidTextInputInterface != null) androidTextInputInterface.setSelection(selectionStart, cursor);
@@ -949,6 +1425,26 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
         public void touchUp (InputEvent event, float x, float y, int pointer, int button) {
             if (selectionStart == cursor) hasSelection = false;
             super.touchUp(event, x, y, pointer, button);
+            //released outside the field or the touch focus was cancelled, clicked did not take the request
+            if (keyboardRequested) cancelKeyboardRequest();
+        }
+
+        /** calanti addition - requests the keyboard for this field without focusing it yet */
+        private void requestKeyboardEarly () {
+            if (androidTextInputInterface == null || androidTextInputInterface.isHardwareKeyboardConnected()) return;
+            androidTextInputInterface.requestKeyboard(CalTextField.this);
+            keyboardRequested = true;
+        }
+
+        /** calanti addition - hands the keyboard back to the field that kept the focus, or hides it */
+        private void cancelKeyboardRequest () {
+            keyboardRequested = false;
+            Stage stage = getStage();
+            Actor focus = stage == null ? null : stage.getKeyboardFocus();
+            if (focus instanceof CalTextField && focus != CalTextField.this && ((CalTextField) focus).androidTextInputInterface != null)
+                ((CalTextField) focus).keyboard.show(true);
+            else
+                androidTextInputInterface.forceHideKeyboard();
         }
 
         protected void setCursorPosition (float x, float y) {
@@ -1164,6 +1660,8 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
         public boolean androidKeyboardNumericalOnly;
         public boolean androidKeyboardAutoCorrect;
         public boolean androidKeyboardTextSuggestions;
+        /** calanti addition - the IME action key of single-line fields shows Done (unfocus) instead of Next */
+        public boolean androidKeyboardActionDone;
 
         public TextFieldStyle () {
         }
@@ -1192,6 +1690,7 @@ public class CalTextField extends Widget implements Disableable, AndroidKeyboard
             this.androidKeyboardAutoCorrect = style.androidKeyboardAutoCorrect;
             this.androidKeyboardNumericalOnly = style.androidKeyboardNumericalOnly;
             this.androidKeyboardTextSuggestions = style.androidKeyboardTextSuggestions;
+            this.androidKeyboardActionDone = style.androidKeyboardActionDone;
         }
     }
 
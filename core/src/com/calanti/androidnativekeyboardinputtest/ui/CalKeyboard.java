@@ -0,0 +1,320 @@
+package com.calanti.androidnativekeyboardinputtest.ui;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.BitmapFontCache;
+import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.scenes.scene2d.InputEvent;
+import com.badlogic.gdx.scenes.scene2d.InputListener;
+import com.badlogic.gdx.scenes.scene2d.Stage;
+import com.badlogic.gdx.scenes.scene2d.Touchable;
+import com.badlogic.gdx.scenes.scene2d.ui.Widget;
+import com.badlogic.gdx.scenes.scene2d.utils.Drawable;
+import com.badlogic.gdx.utils.Align;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Pool;
+import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextArea;
+import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextField;
+
+/** An in-game keyboard drawn with scene2d, for full-screen game modes and the desktop backend.
+ * Set it with {@link CalTextField#setOnscreenKeyboard(CalTextField.OnscreenKeyboard)} and add it to the stage;
+ * key presses go straight into the focused field's edit path on the GL thread, no OS keyboard or thread hop involved.
+ *
+ * Keys are pooled plain objects rather than Actors, all backgrounds are drawn in one pass and all labels come from a
+ * single BitmapFontCache, so a frame is two batched passes regardless of the key count.
+ * The layout follows the focused field's style: numeric for {@link CalTextField.TextFieldStyle#androidKeyboardNumericalOnly},
+ * a return key for {@link CalTextArea.TextAreaStyle#androidKeyboardCarriageReturn} and text otherwise.
+ * @author calanti
+ */
+
+public class CalKeyboard extends Widget implements CalTextField.OnscreenKeyboard {
+
+    static public final char BACKSPACE = 8;
+    static public final char ENTER = '\n';
+    static public final char SHIFT = 14;
+
+    public enum Mode { TEXT, NUMERIC, MULTI_LINE }
+
+    static private final String[] TEXT_ROWS = {"qwertyuiop", "asdfghjkl", SHIFT + "zxcvbnm" + BACKSPACE, ", ." + ENTER};
+    static private final String[] NUMERIC_ROWS = {"123" + BACKSPACE, "456-", "789" + ENTER, ",0."};
+
+    /** One key, positioned in widget coordinates. */
+    static public class Key {
+        public char code;
+        public float x, y, width, height;
+
+        boolean hit(float px, float py) {
+            return px >= x && px < x + width && py >= y && py < y + height;
+        }
+    }
+
+    private final Pool<Key> keyPool = new Pool<Key>() {
+        @Override
+        protected Key newObject() {
+            return new Key();
+        }
+    };
+    private final Array<Key> keys = new Array<Key>();
+
+    private CalKeyboardStyle style;
+    private BitmapFontCache labelCache;
+    private Mode mode = Mode.TEXT;
+    private boolean shift;
+    private Key pressedKey;
+    private final Color tmpColor = new Color();
+
+    /** Field the current layout was built for, to follow focus changes without show() being called */
+    private CalTextField target;
+
+    public CalKeyboard(CalKeyboardStyle style) {
+        setStyle(style);
+        setTouchable(Touchable.enabled);
+        setVisible(false);
+        addListener(new InputListener() {
+            @Override
+            public boolean touchDown(InputEvent event, float x, float y, int pointer, int button) {
+                if (pointer != 0) return false;
+                pressedKey = keyAt(x, y);
+                return true;
+            }
+
+            @Override
+            public void touchDragged(InputEvent event, float x, float y, int pointer) {
+                if (pressedKey != null && !pressedKey.hit(x, y)) pressedKey = null;
+            }
+
+            @Override
+            public void touchUp(InputEvent event, float x, float y, int pointer, int button) {
+                Key key = pressedKey;
+                pressedKey = null;
+                if (key != null && key.hit(x, y)) press(key.code);
+            }
+        });
+    }
+
+    public void setStyle(CalKeyboardStyle style) {
+        if (style == null) throw new IllegalArgumentException("style cannot be null.");
+        this.style = style;
+        labelCache = new BitmapFontCache(style.font, style.font.usesIntegerPositions());
+        invalidateHierarchy();
+    }
+
+    public CalKeyboardStyle getStyle() {
+        return style;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        if (this.mode == mode) return;
+        this.mode = mode;
+        shift = false;
+        invalidate();
+    }
+
+    @Override
+    public void show(boolean visible) {
+        setVisible(visible);
+        if (visible) {
+            updateTarget();
+            toFront();
+        } else {
+            target = null;
+            pressedKey = null;
+        }
+    }
+
+    /** Follows focus changes, and hides once no field has keyboard focus (stage.unfocus, pause, a closed session...). */
+    @Override
+    public void act(float delta) {
+        super.act(delta);
+        if (isVisible()) updateTarget();
+    }
+
+    /** Picks the layout for the field with keyboard focus, or hides if there is none. */
+    private void updateTarget() {
+        Stage stage = getStage();
+        Actor focus = stage == null ? null : stage.getKeyboardFocus();
+        if (!(focus instanceof CalTextField)) {
+            show(false);
+            return;
+        }
+        if (focus == target) return;
+        target = (CalTextField) focus;
+        CalTextField.TextFieldStyle fieldStyle = target.getStyle();
+        if (fieldStyle.androidKeyboardNumericalOnly)
+            setMode(Mode.NUMERIC);
+        else if (fieldStyle instanceof CalTextArea.TextAreaStyle && ((CalTextArea.TextAreaStyle) fieldStyle).androidKeyboardCarriageReturn)
+            setMode(Mode.MULTI_LINE);
+        else
+            setMode(Mode.TEXT);
+    }
+
+    /** Feeds a key into the focused field. */
+    protected void press(char code) {
+        if (code == SHIFT) {
+            shift = !shift;
+            invalidate();
+            return;
+        }
+        Stage stage = getStage();
+        Actor focus = stage == null ? null : stage.getKeyboardFocus();
+        if (!(focus instanceof CalTextField)) return;
+        CalTextField field = (CalTextField) focus;
+
+        if (code == ENTER && mode != Mode.MULTI_LINE) {
+            //done/next, never a newline
+            field.next(false);
+            return;
+        }
+
+        char character = shift ? Character.toUpperCase(code) : code;
+        field.typeCharacter(character);
+        if (shift && Character.isLetter(code)) {
+            shift = false;
+            invalidate();
+        }
+    }
+
+    Key keyAt(float x, float y) {
+        validate();
+        for (int i = 0, n = keys.size; i < n; i++) {
+            Key key = keys.get(i);
+            if (key.hit(x, y)) return key;
+        }
+        return null;
+    }
+
+    @Override
+    public void layout() {
+        keyPool.freeAll(keys);
+        keys.clear();
+        labelCache.clear();
+
+        String[] rows = mode == Mode.NUMERIC ? NUMERIC_ROWS : TEXT_ROWS;
+        float width = getWidth(), height = getHeight();
+        float rowHeight = height / rows.length;
+        BitmapFont font = style.font;
+        float labelOffsetY = (rowHeight + font.getCapHeight()) / 2;
+
+        for (int r = 0; r < rows.length; r++) {
+            String row = rows[r];
+            float totalWeight = 0;
+            for (int i = 0; i < row.length(); i++)
+                totalWeight += weight(row.charAt(i));
+            float unit = width / (mode == Mode.NUMERIC ? totalWeight : Math.max(10, totalWeight));
+            float x = (width - unit * totalWeight) / 2;
+            float y = height - rowHeight * (r + 1);
+
+            for (int i = 0; i < row.length(); i++) {
+                char code = row.charAt(i);
+                Key key = keyPool.obtain();
+                key.code = code;
+                key.x = x + style.keySpacing / 2;
+                key.y = y + style.keySpacing / 2;
+                key.width = unit * weight(code) - style.keySpacing;
+                key.height = rowHeight - style.keySpacing;
+                keys.add(key);
+
+                labelCache.addText(label(code), key.x, key.y + labelOffsetY, key.width, Align.center, false);
+                x += unit * weight(code);
+            }
+        }
+    }
+
+    private float weight(char code) {
+        switch (code) {
+            case ' ':
+                return 4;
+            case ENTER:
+                return mode == Mode.NUMERIC ? 1 : 2.5f;
+            case SHIFT:
+            case BACKSPACE:
+                return mode == Mode.NUMERIC ? 1 : 1.5f;
+            default:
+                return 1;
+        }
+    }
+
+    private CharSequence label(char code) {
+        switch (code) {
+            case ' ':
+                return "space";
+            case ENTER:
+                return mode == Mode.MULTI_LINE ? "return" : "next";
+            case SHIFT:
+                return shift ? "ABC" : "abc";
+            case BACKSPACE:
+                return "del";
+            default:
+                return String.valueOf(shift ? Character.toUpperCase(code) : code);
+        }
+    }
+
+    @Override
+    public void draw(Batch batch, float parentAlpha) {
+        validate();
+        Color color = getColor();
+        float x = getX(), y = getY();
+        batch.setColor(color.r, color.g, color.b, color.a * parentAlpha);
+
+        if (style.background != null) style.background.draw(batch, x, y, getWidth(), getHeight());
+
+        Drawable keyBackground = style.key;
+        if (keyBackground != null) {
+            for (int i = 0, n = keys.size; i < n; i++) {
+                Key key = keys.get(i);
+                Drawable drawable = key == pressedKey && style.keyDown != null ? style.keyDown : keyBackground;
+                drawable.draw(batch, x + key.x, y + key.y, key.width, key.height);
+            }
+        }
+
+        Color fontColor = style.fontColor != null ? style.fontColor : Color.WHITE;
+        labelCache.tint(tmpColor.set(fontColor).mul(1, 1, 1, color.a * parentAlpha));
+        labelCache.setPosition(x, y);
+        labelCache.draw(batch);
+    }
+
+    @Override
+    public float getPrefWidth() {
+        return 0;
+    }
+
+    @Override
+    public float getPrefHeight() {
+        return 4 * style.font.getLineHeight() * 2;
+    }
+
+    /** The style for a {@link CalKeyboard}. */
+    static public class CalKeyboardStyle {
+        public BitmapFont font;
+        /** Optional, defaults to white. */
+        public Color fontColor;
+        /** Optional. */
+        public Drawable background, key, keyDown;
+        public float keySpacing = 8;
+
+        public CalKeyboardStyle() {
+        }
+
+        public CalKeyboardStyle(BitmapFont font, Color fontColor, Drawable background, Drawable key, Drawable keyDown) {
+            this.font = font;
+            this.fontColor = fontColor;
+            this.background = background;
+            this.key = key;
+            this.keyDown = keyDown;
+        }
+
+        public CalKeyboardStyle(CalKeyboardStyle style) {
+            this.font = style.font;
+            if (style.fontColor != null) this.fontColor = new Color(style.fontColor);
+            this.background = style.background;
+            this.key = style.key;
+            this.keyDown = style.keyDown;
+            this.keySpacing = style.keySpacing;
+        }
+    }
+}
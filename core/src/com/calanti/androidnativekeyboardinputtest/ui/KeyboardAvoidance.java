@@ -0,0 +1,168 @@
+package com.calanti.androidnativekeyboardinputtest.ui;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.scenes.scene2d.Action;
+import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.scenes.scene2d.Group;
+import com.badlogic.gdx.scenes.scene2d.Stage;
+import com.badlogic.gdx.utils.viewport.Viewport;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.KeyboardHeightListener;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.VisibleViewSizeChangeListener;
+
+/** Slides the stage root up just enough to keep the focused field above the soft keyboard, and back down when it closes.
+ * Add it to the stage with {@link Stage#addAction(Action)} and feed it visible view size changes, e.g. by registering it
+ * with {@link com.calanti.androidnativekeyboardinputtest.interfaces.android.VisibleView#addListener}. If it is also
+ * registered for keyboard height events, those take precedence: they include the predicted height published as soon
+ * as a field asks for the keyboard, so the field starts moving on the first frame instead of after the IME animation.
+ *
+ * The offset is the smallest one that puts the bottom of the focused field {@link #padding} above the keyboard, without
+ * pushing its top off the screen. It is only recomputed when the keyboard focus, the keyboard height or the focused
+ * field's own bounds change; if the field moves because one of its parents moved, call {@link #invalidate()}.
+ * The root is eased towards the offset every frame without allocating.
+ * @author calanti
+ */
+
+public class KeyboardAvoidance extends Action implements VisibleViewSizeChangeListener, KeyboardHeightListener {
+
+    /** Gap between the field and the top of the keyboard, in stage units */
+    public float padding = 20;
+    /** Fraction of the remaining distance covered per 1/60s, 1 snaps immediately */
+    public float easing = 0.25f;
+
+    /** Visible height in screen pixels */
+    private float visibleHeight = -1;
+    private float appliedVisibleHeight = -1;
+    /** Keyboard height in screen pixels, -1 until a keyboard height event arrived */
+    private float keyboardHeight = -1;
+    private float appliedKeyboardHeight = -1;
+
+    private Actor focus;
+    private float focusX, focusY, focusWidth, focusHeight;
+    private boolean dirty = true;
+
+    private float targetOffset, offset;
+    /** Root the offset was applied to, put back at 0 when the action restarts or is removed */
+    private Group shiftedRoot;
+    private final Vector2 tmp = new Vector2();
+
+    @Override
+    public void onSizeChange(float width, float height) {
+        visibleHeight = height;
+    }
+
+    @Override
+    public void onKeyboardOpened(float height, long timeMillis) {
+        keyboardHeight = height;
+    }
+
+    @Override
+    public void onKeyboardHeightChanged(float height, long timeMillis) {
+        keyboardHeight = height;
+    }
+
+    @Override
+    public void onKeyboardClosed(long timeMillis) {
+        keyboardHeight = 0;
+    }
+
+    /** Forces the offset to be recomputed on the next frame. */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /** Current offset applied to the root, in stage units */
+    public float getOffset() {
+        return offset;
+    }
+
+    @Override
+    public boolean act(float delta) {
+        Actor actor = getActor();
+        Stage stage = actor == null ? null : actor.getStage();
+        if (stage == null) return false;
+        Group root = stage.getRoot();
+
+        float visibleHeight = this.visibleHeight;
+        if (visibleHeight != appliedVisibleHeight) {
+            appliedVisibleHeight = visibleHeight;
+            dirty = true;
+        }
+        if (keyboardHeight != appliedKeyboardHeight) {
+            appliedKeyboardHeight = keyboardHeight;
+            dirty = true;
+        }
+
+        Actor focus = stage.getKeyboardFocus();
+        if (focus != this.focus) {
+            this.focus = focus;
+            dirty = true;
+        }
+        if (focus != null && (focus.getX() != focusX || focus.getY() != focusY
+                || focus.getWidth() != focusWidth || focus.getHeight() != focusHeight)) {
+            focusX = focus.getX();
+            focusY = focus.getY();
+            focusWidth = focus.getWidth();
+            focusHeight = focus.getHeight();
+            dirty = true;
+        }
+
+        if (dirty) {
+            dirty = false;
+            targetOffset = computeOffset(stage, root, focus);
+        }
+
+        if (offset != targetOffset) {
+            float step = easing >= 1 ? 1 : 1 - (float) Math.pow(1 - easing, delta * 60);
+            offset += (targetOffset - offset) * step;
+            if (Math.abs(targetOffset - offset) < 0.5f) offset = targetOffset;
+            root.setY(offset);
+            shiftedRoot = root;
+        }
+        return false;
+    }
+
+    private float computeOffset(Stage stage, Group root, Actor focus) {
+        float screenKeyboardHeight;
+        if (keyboardHeight >= 0) screenKeyboardHeight = keyboardHeight;
+        else if (visibleHeight >= 0) screenKeyboardHeight = Gdx.graphics.getHeight() - visibleHeight;
+        else return 0;
+        if (focus == null) return 0;
+
+        Viewport viewport = stage.getViewport();
+        float keyboardTop = (screenKeyboardHeight - viewport.getScreenY())
+                * viewport.getWorldHeight() / viewport.getScreenHeight();
+        if (keyboardTop <= 0) return 0;
+
+        //field bounds in stage coordinates, without our own offset
+        focus.localToStageCoordinates(tmp.set(0, 0));
+        float bottom = tmp.y - root.getY();
+        float top = bottom + focus.getHeight();
+
+        float needed = keyboardTop + padding - bottom;
+        if (needed <= 0) return 0;
+        //a field taller than the space above the keyboard keeps its top on screen
+        float maxOffset = Math.max(0, viewport.getWorldHeight() - padding - top);
+        return Math.min(needed, maxOffset);
+    }
+
+    @Override
+    public void setActor(Actor actor) {
+        if (actor == null) releaseRoot();
+        super.setActor(actor);
+    }
+
+    @Override
+    public void restart() {
+        focus = null;
+        dirty = true;
+        targetOffset = offset = 0;
+        releaseRoot();
+    }
+
+    private void releaseRoot() {
+        if (shiftedRoot == null) return;
+        shiftedRoot.setY(0);
+        shiftedRoot = null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.calanti.androidnativekeyboardinputtest.ui;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalLineBreaker;
+import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextArea;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Wraps the text of many {@link CalTextArea}s in parallel before a screen is shown, so their first draw finds the line
+ * breaks in place instead of wrapping them one after another on the GL thread.
+ *
+ * {@link #prelayout(Array, Executor, Runnable)} snapshots text, font and wrap width of every area on the GL thread, runs
+ * {@link CalLineBreaker} (the same algorithm as {@link CalTextArea}'s own path) for each on the executor, then installs all
+ * results in a single runnable on the GL thread. An area edited or resized meanwhile keeps its own, newer state and
+ * wraps on its next draw as usual, as does one whose worker failed.
+ * @author calanti
+ */
+
+public final class TextAreaPrelayout {
+
+    private TextAreaPrelayout() {
+    }
+
+    /** Call on the GL thread once the areas have their final sizes, e.g. after validating the table holding them.
+     * @param executor worker pool, e.g. a fixed thread pool with one thread per core
+     * @param done run on the GL thread after the results are installed, may be null */
+    public static void prelayout(Array<? extends CalTextArea> areas, Executor executor, final Runnable done) {
+        final int count = areas.size;
+        final CalTextArea[] targets = new CalTextArea[count];
+        final String[] texts = new String[count];
+        final float[] wrapWidths = new float[count];
+        final IntArray[] lines = new IntArray[count];
+        BitmapFont.BitmapFontData[] fonts = new BitmapFont.BitmapFontData[count];
+        final CalLineBreaker.WordCharacters[] words = new CalLineBreaker.WordCharacters[count];
+        for (int i = 0; i < count; i++) {
+            CalTextArea area = areas.get(i);
+            targets[i] = area;
+            texts[i] = area.getText();
+            wrapWidths[i] = area.getWrapWidth();
+            fonts[i] = area.getStyle().font.getData();
+            words[i] = area.getWordCharacters();
+        }
+
+        final Runnable install = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++)
+                    if (lines[i] != null) targets[i].installLineBreaks(texts[i], wrapWidths[i], lines[i]);
+                if (done != null) done.run();
+            }
+        };
+        if (count == 0) {
+            Gdx.app.postRunnable(install);
+            return;
+        }
+
+        final AtomicInteger remaining = new AtomicInteger(count);
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            final BitmapFont.BitmapFontData font = fonts[i];
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        IntArray result = new IntArray();
+                        CalLineBreaker.breakLines(font, texts[index], wrapWidths[index], words[index], result);
+                        lines[index] = result;
+                    } finally {
+                        //postRunnable synchronizes, so the results are visible to the GL thread
+                        if (remaining.decrementAndGet() == 0) Gdx.app.postRunnable(install);
+                    }
+                }
+            });
+        }
+    }
+}
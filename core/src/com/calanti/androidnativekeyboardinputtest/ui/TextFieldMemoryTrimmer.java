@@ -0,0 +1,62 @@
+package com.calanti.androidnativekeyboardinputtest.ui;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.scenes.scene2d.Group;
+import com.badlogic.gdx.scenes.scene2d.Stage;
+import com.badlogic.gdx.utils.SnapshotArray;
+import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextField;
+
+/** Memory pressure policy for the text fields of a stage, see {@link CalTextField#trimMemory()}.
+ * A field counts as offscreen if it, or an ancestor, is hidden, lies outside its parent's culling area (as set by a
+ * ScrollPane) or outside the camera. Focused fields are never trimmed. GL thread only.
+ * @author calanti
+ */
+
+public final class TextFieldMemoryTrimmer {
+
+    private static final Vector2 tmp = new Vector2();
+    private static final Rectangle view = new Rectangle();
+
+    private TextFieldMemoryTrimmer() {
+    }
+
+    /** @param includeVisible if false only offscreen fields are trimmed (the app is still showing), if true all unfocused
+     *                       ones are (the app went to the background)
+     * @return estimated number of bytes released */
+    public static int trim(Stage stage, boolean includeVisible) {
+        Camera camera = stage.getCamera();
+        float width = stage.getViewport().getWorldWidth(), height = stage.getViewport().getWorldHeight();
+        view.set(camera.position.x - width / 2, camera.position.y - height / 2, width, height);
+        return trim(stage.getRoot(), includeVisible, false);
+    }
+
+    private static int trim(Group group, boolean includeVisible, boolean offscreen) {
+        int bytes = 0;
+        Rectangle cullingArea = group.getCullingArea();
+        SnapshotArray<Actor> children = group.getChildren();
+        Actor[] actors = children.begin();
+        for (int i = 0, n = children.size; i < n; i++) {
+            Actor child = actors[i];
+            boolean childOffscreen = offscreen || !child.isVisible()
+                    || (cullingArea != null && !overlaps(cullingArea, child.getX(), child.getY(), child.getWidth(), child.getHeight()));
+            if (child instanceof CalTextField) {
+                if (includeVisible || childOffscreen || !onCamera(child)) bytes += ((CalTextField) child).trimMemory();
+            }
+            if (child instanceof Group) bytes += trim((Group) child, includeVisible, childOffscreen);
+        }
+        children.end();
+        return bytes;
+    }
+
+    private static boolean onCamera(Actor actor) {
+        actor.localToStageCoordinates(tmp.set(0, 0));
+        return overlaps(view, tmp.x, tmp.y, actor.getWidth(), actor.getHeight());
+    }
+
+    private static boolean overlaps(Rectangle area, float x, float y, float width, float height) {
+        return x <= area.x + area.width && x + width >= area.x && y <= area.y + area.height && y + height >= area.y;
+    }
+}
@@ -0,0 +1,99 @@
+package com.calanti.androidnativekeyboardinputtest.ui;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+/** Per-row text state for a {@link VirtualTextList}: the text plus cursor and selection start, kept in two flat arrays
+ * so a row costs one String and two ints however many widgets scroll past it.
+ * The list follows rows being inserted or removed by itself; call {@link VirtualTextList#modelChanged()} after changing
+ * the text of rows from outside the list.
+ * @author calanti
+ */
+
+public class TextRowModel {
+
+    private final Array<String> texts;
+    /** cursor and selection start of each row, in pairs */
+    private final IntArray selections;
+
+    /** Told when rows move, so widgets bound to a row can follow it */
+    interface Listener {
+        void rowInserted(int row);
+
+        void rowRemoved(int row);
+
+        void rowsCleared();
+    }
+
+    private Listener listener;
+
+    public TextRowModel() {
+        this(16);
+    }
+
+    public TextRowModel(int capacity) {
+        texts = new Array<String>(true, capacity, String.class);
+        selections = new IntArray(true, capacity * 2);
+    }
+
+    public int size() {
+        return texts.size;
+    }
+
+    void setListener(Listener listener) {
+        if (listener != null && this.listener != null && this.listener != listener)
+            throw new IllegalStateException("model already used by another list");
+        this.listener = listener;
+    }
+
+    /** Adds a row with the cursor at the start, like a new CalTextField. */
+    public void add(String text) {
+        texts.add(text == null ? "" : text);
+        selections.add(0);
+        selections.add(0);
+        if (listener != null) listener.rowInserted(texts.size - 1);
+    }
+
+    public void insert(int row, String text) {
+        texts.insert(row, text == null ? "" : text);
+        selections.insert(row * 2, 0);
+        selections.insert(row * 2, 0);
+        if (listener != null) listener.rowInserted(row);
+    }
+
+    public void removeIndex(int row) {
+        texts.removeIndex(row);
+        selections.removeRange(row * 2, row * 2 + 1);
+        if (listener != null) listener.rowRemoved(row);
+    }
+
+    public void clear() {
+        texts.clear();
+        selections.clear();
+        if (listener != null) listener.rowsCleared();
+    }
+
+    public String getText(int row) {
+        return texts.get(row);
+    }
+
+    public int getCursor(int row) {
+        return selections.get(row * 2);
+    }
+
+    /** Equal to the cursor if the row has no selection */
+    public int getSelectionStart(int row) {
+        return selections.get(row * 2 + 1);
+    }
+
+    /** Sets the text and moves the cursor to the start. */
+    public void setText(int row, String text) {
+        set(row, text, 0, 0);
+    }
+
+    public void set(int row, String text, int cursor, int selectionStart) {
+        texts.set(row, text == null ? "" : text);
+        selections.set(row * 2, cursor);
+        selections.set(row * 2 + 1, selectionStart);
+    }
+}
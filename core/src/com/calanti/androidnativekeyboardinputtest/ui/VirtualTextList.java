@@ -0,0 +1,235 @@
+package com.calanti.androidnativekeyboardinputtest.ui;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.scenes.scene2d.Stage;
+import com.badlogic.gdx.scenes.scene2d.ui.ScrollPane;
+import com.badlogic.gdx.scenes.scene2d.ui.WidgetGroup;
+import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.Pool;
+import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextField;
+
+/** A scrolling list of editable rows that only keeps the rows in view as live fields.
+ *
+ * Put it in a {@link ScrollPane}: the pane hands it the visible area through {@link #setCullingArea(Rectangle)} before
+ * every draw, rows scrolling in get a field from the pool bound to their {@link TextRowModel} state with
+ * {@link CalTextField#rebind(String, int, int)}, rows scrolling out write their cursor back to the model and go back to
+ * the pool. Edits are written to the model as they happen. So the number of fields, their glyph layouts, line indexes
+ * and listeners follows the viewport, not the row count. Without a culling area every row is live.
+ *
+ * Rows are {@link #getRowHeight()} high. The focused field is never recycled, it stays bound to its row while scrolled
+ * away so the keyboard session is not interrupted. Live fields follow their row as rows are inserted or removed above
+ * it; a field whose row is removed loses focus and keyboard and goes back to the pool without saving. Focus traversal ({@link CalTextField#next(boolean)}) only reaches
+ * live rows.
+ * @author calanti
+ */
+
+public class VirtualTextList<T extends CalTextField> extends WidgetGroup implements TextRowModel.Listener {
+
+    private final TextRowModel model;
+    private final Pool<T> pool;
+    private float rowHeight;
+
+    /** Live fields and the row each is bound to */
+    private final Array<T> live = new Array<T>();
+    private final IntArray liveRows = new IntArray();
+    private int firstRow, lastRow = -1;
+    private Rectangle cullingArea;
+
+    private final ChangeListener rowChanged = new ChangeListener() {
+        @Override
+        public void changed(ChangeEvent event, Actor actor) {
+            Actor field = event.getListenerActor();
+            for (int i = 0; i < live.size; i++) {
+                if (live.get(i) == field) {
+                    save(i);
+                    break;
+                }
+            }
+        }
+    };
+
+    public VirtualTextList(TextRowModel model, Pool<T> pool, float rowHeight) {
+        this.model = model;
+        this.pool = pool;
+        this.rowHeight = rowHeight;
+        model.setListener(this);
+    }
+
+    public TextRowModel getModel() {
+        return model;
+    }
+
+    public float getRowHeight() {
+        return rowHeight;
+    }
+
+    public void setRowHeight(float rowHeight) {
+        this.rowHeight = rowHeight;
+        invalidateHierarchy();
+    }
+
+    /** Rebinds the live fields after rows were added, removed or changed in the model. The focused field keeps its text
+     * unless its row is gone; change its text through the field instead so the native keyboard follows. */
+    public void modelChanged() {
+        for (int i = live.size - 1; i >= 0; i--) {
+            T field = live.get(i);
+            int row = liveRows.get(i);
+            if (row >= model.size()) {
+                drop(i);
+            } else if (!isFocused(field)) {
+                field.rebind(model.getText(row), model.getCursor(row), model.getSelectionStart(row));
+            }
+        }
+        lastRow = -1;
+        invalidateHierarchy();
+    }
+
+    /** TextRowModel.Listener, shifts the live fields below the new row */
+    @Override
+    public void rowInserted(int row) {
+        for (int i = 0; i < live.size; i++)
+            if (liveRows.get(i) >= row) liveRows.incr(i, 1);
+        lastRow = -1;
+        invalidateHierarchy();
+    }
+
+    /** TextRowModel.Listener, drops the row's field and shifts the ones below it */
+    @Override
+    public void rowRemoved(int row) {
+        for (int i = live.size - 1; i >= 0; i--) {
+            int liveRow = liveRows.get(i);
+            if (liveRow == row) drop(i);
+            else if (liveRow > row) liveRows.incr(i, -1);
+        }
+        lastRow = -1;
+        invalidateHierarchy();
+    }
+
+    /** TextRowModel.Listener */
+    @Override
+    public void rowsCleared() {
+        for (int i = live.size - 1; i >= 0; i--)
+            drop(i);
+        lastRow = -1;
+        invalidateHierarchy();
+    }
+
+    /** @return the live field of the row, or null if the row is not in view */
+    public T getField(int row) {
+        int index = liveRows.indexOf(row);
+        return index == -1 ? null : live.get(index);
+    }
+
+    /** Number of live fields, for profiling */
+    public int getLiveCount() {
+        return live.size;
+    }
+
+    @Override
+    public float getPrefWidth() {
+        return 0;
+    }
+
+    @Override
+    public float getPrefHeight() {
+        return model.size() * rowHeight;
+    }
+
+    @Override
+    public void setCullingArea(Rectangle cullingArea) {
+        super.setCullingArea(cullingArea);
+        this.cullingArea = cullingArea;
+        updateRows();
+    }
+
+    @Override
+    public void layout() {
+        lastRow = -1;
+        updateRows();
+        for (int i = 0; i < live.size; i++)
+            position(live.get(i), liveRows.get(i));
+    }
+
+    @Override
+    public void act(float delta) {
+        //a focused field kept alive offscreen goes back to the pool once it loses focus
+        for (int i = live.size - 1; i >= 0; i--) {
+            int row = liveRows.get(i);
+            if ((row < firstRow || row > lastRow) && !isFocused(live.get(i))) release(i);
+        }
+        super.act(delta);
+    }
+
+    private void updateRows() {
+        int first, last;
+        if (cullingArea == null) {
+            first = 0;
+            last = model.size() - 1;
+        } else {
+            float height = getHeight();
+            first = Math.max(0, (int) ((height - cullingArea.y - cullingArea.height) / rowHeight));
+            last = Math.min(model.size() - 1, (int) ((height - cullingArea.y) / rowHeight));
+        }
+        if (first == firstRow && last == lastRow) return;
+        firstRow = first;
+        lastRow = last;
+
+        for (int i = live.size - 1; i >= 0; i--) {
+            int row = liveRows.get(i);
+            if ((row < first || row > last) && !isFocused(live.get(i))) release(i);
+        }
+        for (int row = first; row <= last; row++) {
+            if (liveRows.contains(row)) continue;
+            T field = pool.obtain();
+            field.rebind(model.getText(row), model.getCursor(row), model.getSelectionStart(row));
+            if (!field.getListeners().contains(rowChanged, true)) field.addListener(rowChanged);
+            live.add(field);
+            liveRows.add(row);
+            addActor(field);
+            position(field, row);
+        }
+    }
+
+    private void position(T field, int row) {
+        field.setBounds(0, getHeight() - (row + 1) * rowHeight, getWidth(), rowHeight);
+    }
+
+    private void save(int index) {
+        T field = live.get(index);
+        int row = liveRows.get(index);
+        if (row < model.size())
+            model.set(row, field.getText(), field.getCursorPosition(),
+                    field.hasSelection() ? field.getSelectionStart() : field.getCursorPosition());
+    }
+
+    private void release(int index) {
+        save(index);
+        free(index);
+    }
+
+    /** Frees the field of a row that no longer exists, without saving it over whatever row took its index */
+    private void drop(int index) {
+        T field = live.get(index);
+        Stage stage = field.getStage();
+        boolean focused = isFocused(field);
+        if (focused) field.getOnscreenKeyboard().show(false);
+        //out of live before anything can fire a change for it
+        free(index);
+        if (focused) stage.unfocus(field);
+    }
+
+    private void free(int index) {
+        T field = live.removeIndex(index);
+        liveRows.removeIndex(index);
+        field.remove();
+        pool.free(field);
+    }
+
+    private static boolean isFocused(Actor actor) {
+        Stage stage = actor.getStage();
+        return stage != null && stage.getKeyboardFocus() == actor;
+    }
+}
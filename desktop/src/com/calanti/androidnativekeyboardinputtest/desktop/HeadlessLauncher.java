@@ -0,0 +1,21 @@
+package com.calanti.androidnativekeyboardinputtest.desktop;
+
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+
+/** Runs the keyboard bridge off-device against the simulated EditText, see {@link KeyboardBridgeBenchmark}.
+ * With "ime" as the first argument it runs {@link ImeEditorHarness} instead, with "window" {@link TextWindowHarness}
+ * and with "rows" {@link VirtualTextListHarness}. */
+public class HeadlessLauncher {
+	public static void main (String[] arg) {
+		if (arg.length > 0 && arg[0].equals("window")) {
+			new TextWindowHarness().run();
+			return;
+		}
+		HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+		config.renderInterval = 1f / 60f;
+		if (arg.length > 0 && arg[0].equals("ime")) new HeadlessApplication(new ImeEditorHarness(), config);
+		else if (arg.length > 0 && arg[0].equals("rows")) new HeadlessApplication(new VirtualTextListHarness(), config);
+		else new HeadlessApplication(new KeyboardBridgeBenchmark(), config);
+	}
+}
@@ -0,0 +1,225 @@
+package com.calanti.androidnativekeyboardinputtest.desktop;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.calanti.androidnativekeyboardinputtest.bridge.ImeEditor;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.AndroidKeyboardFeedbackInterface;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.AndroidTextInputInterface;
+import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextField;
+
+/** Drives {@link ImeEditor} with scripted InputConnection calls, the way a soft keyboard would, and checks the
+ * CalTextField it feeds: text, cursor, selection and composing region after every step.
+ *
+ * {@link StandInBridge} plays AndroidInputViewKeyboard without the threads: edits go straight to
+ * {@link CalTextField#textReplaced}, text and selection the field pushes back go straight into the editor.
+ * Prints every failed check and a summary. Run with "ime" as the first argument of {@link HeadlessLauncher}.
+ * @Author: calanti
+ */
+
+public class ImeEditorHarness extends ApplicationAdapter {
+
+    private BitmapFont font;
+    private CalTextField.TextFieldStyle style;
+    private int checks, failures;
+
+    @Override
+    public void create() {
+        Gdx.gl = Gdx.gl20 = KeyboardBridgeBenchmark.noOpGl();
+        font = new BitmapFont();
+        style = new CalTextField.TextFieldStyle();
+        style.font = font;
+        style.fontColor = Color.BLACK;
+
+        composeAndCommit();
+        deleteAroundCursor();
+        replaceSelection();
+        composingRegion();
+        cursorPositions();
+        singleLineEnter();
+        syncKeepsComposition();
+
+        System.out.println("ImeEditor harness: " + checks + " checks, " + (failures == 0 ? "all passed" : failures + " FAILED"));
+        Gdx.app.exit();
+    }
+
+    @Override
+    public void dispose() {
+        if (font != null) font.dispose();
+    }
+
+    private void composeAndCommit() {
+        StandInBridge ime = bind("");
+        ime.editor.setComposingText("he", 1);
+        expect("compose he", ime, "he", 2, 2, 0, 2);
+        ime.editor.setComposingText("hello", 1);
+        expect("compose hello", ime, "hello", 5, 5, 0, 5);
+        ime.editor.commitText("hello ", 1);
+        expect("commit hello", ime, "hello ", 6, 6, -1, -1);
+        ime.editor.setComposingText("wor", 1);
+        expect("compose wor", ime, "hello wor", 9, 9, 6, 9);
+        ime.editor.commitText("world", 1);
+        expect("commit world", ime, "hello world", 11, 11, -1, -1);
+        //an empty composition ends it without touching the text
+        ime.editor.setComposingText("", 1);
+        expect("empty composition", ime, "hello world", 11, 11, -1, -1);
+    }
+
+    private void deleteAroundCursor() {
+        StandInBridge ime = bind("hello world");
+        ime.editor.setSelection(5, 5);
+        expect("cursor after hello", ime, "hello world", 5, 5, -1, -1);
+        ime.editor.deleteSurroundingText(2, 0);
+        expect("backspace twice", ime, "hel world", 3, 3, -1, -1);
+        ime.editor.deleteSurroundingText(0, 1);
+        expect("forward delete", ime, "helworld", 3, 3, -1, -1);
+        ime.editor.deleteSurroundingText(10, 10);
+        expect("delete past both ends", ime, "", 0, 0, -1, -1);
+    }
+
+    private void replaceSelection() {
+        StandInBridge ime = bind("hello world");
+        ime.editor.setSelection(6, 11);
+        expect("select world", ime, "hello world", 6, 11, -1, -1);
+        ime.editor.commitText("there", 1);
+        expect("type over selection", ime, "hello there", 11, 11, -1, -1);
+        ime.editor.setSelection(0, 5);
+        ime.editor.deleteSurroundingText(1, 0);
+        expect("backspace keeps selection edges", ime, "hello there", 0, 5, -1, -1);
+    }
+
+    private void composingRegion() {
+        StandInBridge ime = bind("hello world");
+        ime.editor.setSelection(11, 11);
+        ime.editor.setComposingRegion(6, 11);
+        expect("recompose world", ime, "hello world", 11, 11, 6, 11);
+        ime.editor.setComposingText("words", 1);
+        expect("correct to words", ime, "hello words", 11, 11, 6, 11);
+        ime.editor.deleteSurroundingText(6, 0);
+        expect("delete over composition ends it", ime, "hello", 5, 5, -1, -1);
+        ime.editor.setComposingRegion(0, 5);
+        ime.editor.finishComposingText();
+        expect("finish composing", ime, "hello", 5, 5, -1, -1);
+    }
+
+    private void cursorPositions() {
+        StandInBridge ime = bind("ac");
+        ime.editor.setSelection(1, 1);
+        ime.editor.commitText("b", 0);
+        expect("newCursorPosition 0 keeps the cursor before", ime, "abc", 1, 1, -1, -1);
+        ime.editor.commitText("X", 2);
+        expect("newCursorPosition 2 skips a char", ime, "aXbc", 3, 3, -1, -1);
+    }
+
+    /** Single line fields strip the enter and push the corrected text back, the editor has to follow */
+    private void singleLineEnter() {
+        StandInBridge ime = bind("abc");
+        ime.editor.setSelection(3, 3);
+        ime.editor.commitText("\n", 1);
+        expect("enter stripped", ime, "abc", 3, 3, -1, -1);
+        check("enter stripped, editor corrected", "abc".contentEquals(ime.editor.getText()));
+        ime.editor.commitText("d", 1);
+        expect("typing after a stripped enter", ime, "abcd", 4, 4, -1, -1);
+    }
+
+    /** Text the field pushes back is merged in, a composition outside the change survives it */
+    private void syncKeepsComposition() {
+        ImeEditor editor = new ImeEditor();
+        editor.reset("ab cd", 5, 5);
+        editor.setComposingRegion(3, 5);
+        editor.sync("b cd", 4, 4);
+        check("sync before the composition shifts it", "b cd".contentEquals(editor.getText())
+                && editor.getComposingStart() == 2 && editor.getComposingEnd() == 4 && editor.getSelectionStart() == 4);
+        editor.sync("b cdx", 5, 5);
+        check("sync after the composition keeps it", "b cdx".contentEquals(editor.getText())
+                && editor.getComposingStart() == 2 && editor.getComposingEnd() == 4);
+        editor.sync("b cx", 4, 4);
+        check("sync inside the composition ends it", "b cx".contentEquals(editor.getText()) && !editor.hasComposingRegion());
+    }
+
+    private StandInBridge bind(String text) {
+        StandInBridge ime = new StandInBridge();
+        ime.field = new CalTextField(text, style, ime);
+        ime.field.setWidth(1000);
+        ime.requestKeyboard(ime.field);
+        return ime;
+    }
+
+    /** Checks the field, and that the editor agrees with it */
+    private void expect(String step, StandInBridge ime, String text, int selectionStart, int selectionEnd,
+                        int composingStart, int composingEnd) {
+        CalTextField field = ime.field;
+        int fieldStart = field.hasSelection() ? field.getSelectionStart() : field.getCursorPosition();
+        int fieldEnd = field.getCursorPosition();
+        check(step + ": text \"" + field.getText() + "\"", text.equals(field.getText()));
+        check(step + ": selection " + fieldStart + "-" + fieldEnd,
+                Math.min(fieldStart, fieldEnd) == selectionStart && Math.max(fieldStart, fieldEnd) == selectionEnd);
+        check(step + ": composing " + field.getComposingStart() + "-" + field.getComposingEnd(),
+                field.getComposingStart() == composingStart && field.getComposingEnd() == composingEnd);
+        check(step + ": editor text \"" + ime.editor.getText() + "\"", field.getText().contentEquals(ime.editor.getText()));
+    }
+
+    private void check(String what, boolean ok) {
+        checks++;
+        if (ok) return;
+        failures++;
+        System.out.println("FAILED " + what);
+    }
+
+    /** AndroidInputViewKeyboard without Android or threads */
+    private static class StandInBridge implements AndroidTextInputInterface, ImeEditor.Listener {
+        final ImeEditor editor = new ImeEditor();
+        CalTextField field;
+        private int appliedRevision;
+
+        StandInBridge() {
+            editor.setListener(this);
+        }
+
+        @Override
+        public void onEdit(int start, int end, CharSequence replacement, int selectionStart, int selectionEnd,
+                           int composingStart, int composingEnd) {
+            field.textReplaced(start, end, replacement, selectionStart, selectionEnd, composingStart, composingEnd, appliedRevision);
+        }
+
+        @Override
+        public void requestKeyboard(AndroidKeyboardFeedbackInterface textField) {
+            editor.reset(textField.getText(), textField.getCursorPosition(), textField.getCursorPosition());
+            appliedRevision = textField.getTextRevision();
+        }
+
+        @Override
+        public boolean isHardwareKeyboardConnected() {
+            return false;
+        }
+
+        @Override
+        public void forceHideKeyboard() {
+        }
+
+        @Override
+        public void suspendKeyboard() {
+        }
+
+        @Override
+        public void keyboardHideDetected() {
+        }
+
+        @Override
+        public void setCursorPosition(int position) {
+            editor.select(position, position);
+        }
+
+        @Override
+        public void setSelection(int start, int end) {
+            editor.select(start, end);
+        }
+
+        @Override
+        public void setText(CharSequence text, int cursorPosition, int revision) {
+            editor.sync(text, cursorPosition, cursorPosition);
+            appliedRevision = revision;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.calanti.androidnativekeyboardinputtest.desktop;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextField;
+import com.calanti.androidnativekeyboardinputtest.simulator.SimulatedAndroidKeyboard;
+import com.calanti.androidnativekeyboardinputtest.simulator.SimulatedUiThread;
+import com.calanti.androidnativekeyboardinputtest.simulator.SimulatedVisibleView;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** Headless run of the full keystroke path: simulated EditText -> TextWatcher frame flush -> session check on the GL
+ * thread -> CalTextField, through the same KeyboardSession and PendingTextCommands as AndroidKeyboard.
+ * Prints per-keystroke latency and checks the field and the EditText end up identical after a burst.
+ * Nothing is drawn, GL calls go to a no-op GL20 so the default font can still be loaded.
+ * @Author: calanti
+ */
+
+public class KeyboardBridgeBenchmark extends ApplicationAdapter {
+
+    private static final int KEYSTROKES = 200;
+
+    private SimulatedUiThread uiThread;
+    private SimulatedAndroidKeyboard keyboard;
+    private CalTextField textField;
+    private BitmapFont font;
+
+    /** Field text length as last seen on the GL thread */
+    private volatile int observedLength;
+
+    @Override
+    public void create() {
+        Gdx.gl = Gdx.gl20 = noOpGl();
+
+        font = new BitmapFont();
+        CalTextField.TextFieldStyle style = new CalTextField.TextFieldStyle();
+        style.font = font;
+        style.fontColor = Color.BLACK;
+
+        uiThread = new SimulatedUiThread();
+        SimulatedVisibleView visibleView = new SimulatedVisibleView(uiThread, 1080, 1920, 800);
+        keyboard = new SimulatedAndroidKeyboard(uiThread, visibleView);
+        textField = new CalTextField("", style, keyboard);
+        textField.setWidth(1000);
+
+        Thread driver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runBenchmark();
+            }
+        }, "benchmark-driver");
+        driver.setDaemon(true);
+        driver.start();
+    }
+
+    @Override
+    public void render() {
+        observedLength = textField.getText().length();
+    }
+
+    @Override
+    public void dispose() {
+        if (uiThread != null) uiThread.dispose();
+        if (font != null) font.dispose();
+    }
+
+    private void runBenchmark() {
+        Gdx.app.postRunnable(new Runnable() {
+            @Override
+            public void run() {
+                textField.getOnscreenKeyboard().show(true);
+            }
+        });
+        while (!keyboard.isBound()) Thread.yield();
+
+        long[] latencies = new long[KEYSTROKES];
+        for (int i = 0; i < KEYSTROKES; i++) {
+            long start = System.nanoTime();
+            keyboard.type("a");
+            while (observedLength != i + 1) Thread.yield();
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        System.out.println("keystroke -> field latency over " + KEYSTROKES + " keys: p50 " + latencies[KEYSTROKES / 2] / 1000
+                + "us, p95 " + latencies[KEYSTROKES * 95 / 100] / 1000 + "us, max " + latencies[KEYSTROKES - 1] / 1000 + "us");
+
+        //burst without waiting, then let both sides settle and check they hold the same text
+        for (int i = 0; i < KEYSTROKES; i++) {
+            if (i % 7 == 6) keyboard.backspace();
+            else keyboard.type("b");
+        }
+        keyboard.awaitSettled();
+        String editText = keyboard.getEditText();
+        final AtomicReference<String> field = new AtomicReference<String>();
+        final CountDownLatch read = new CountDownLatch(1);
+        Gdx.app.postRunnable(new Runnable() {
+            @Override
+            public void run() {
+                field.set(textField.getText());
+                read.countDown();
+            }
+        });
+        try {
+            read.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        String fieldText = field.get();
+        System.out.println("burst of " + KEYSTROKES + " edits: " + (editText.equals(fieldText) ? "field in sync with EditText"
+                : "DIVERGED, EditText " + editText.length() + " chars, field " + fieldText.length() + " chars"));
+
+        Gdx.app.exit();
+    }
+
+    /** Every GL call is a no-op returning 0/false/null */
+    static GL20 noOpGl() {
+        return noOp(GL20.class);
+    }
+
+    /** An implementation of the interface whose every call is a no-op returning 0/false/null */
+    static <T> T noOp(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                Class<?> type = method.getReturnType();
+                if (type == int.class) return 0;
+                if (type == long.class) return 0L;
+                if (type == boolean.class) return false;
+                if (type == float.class) return 0f;
+                return null;
+            }
+        }));
+    }
+}
@@ -0,0 +1,171 @@
+package com.calanti.androidnativekeyboardinputtest.desktop;
+
+import com.calanti.androidnativekeyboardinputtest.bridge.TextWindow;
+
+import java.util.Random;
+
+/** Checks {@link TextWindow}, the part of a long document AndroidKeyboard mirrors into the hidden EditText, against a
+ * plain StringBuilder copy of the document: edits at both window edges, edits across slides, surrogate pairs on the
+ * cut, selections reaching out of the window and a long random run of edits and slides.
+ * Prints every failed check and a summary. Run with "window" as the first argument of {@link HeadlessLauncher}.
+ * @Author: calanti
+ */
+
+public class TextWindowHarness {
+
+    private int checks, failures;
+
+    public void run() {
+        editAtEdges();
+        editAcrossSlide();
+        surrogatePairOnCut();
+        selectionOutsideWindow();
+        slideMargins();
+        toWindowClamping();
+        randomEdits();
+        System.out.println("TextWindow harness: " + checks + " checks, " + (failures == 0 ? "all passed" : failures + " FAILED"));
+    }
+
+    private void editAtEdges() {
+        String document = digits(100);
+        TextWindow window = new TextWindow(20);
+        String text = window.reset(document, 50);
+        int start = window.getStart();
+        check("window cut around the cursor", start == 40 && text.equals(document.substring(40, 60)));
+
+        check("insert at the start edge", window.edited("ab" + text)
+                && window.editStart == start && window.editEnd == start && window.editReplacement.equals("ab"));
+        text = "ab" + text;
+        check("insert at the start edge, document", window.getDocument().equals(document.substring(0, 40) + text + document.substring(60)));
+
+        check("delete at the end edge", window.edited(text.substring(0, text.length() - 3))
+                && window.editStart == 59 && window.editEnd == 62 && window.editReplacement.isEmpty());
+        text = text.substring(0, text.length() - 3);
+        check("delete at the end edge, document", window.getDocument().equals(document.substring(0, 40) + text + document.substring(60)));
+        check("unchanged text is no edit", !window.edited(text));
+    }
+
+    private void editAcrossSlide() {
+        StringBuilder model = new StringBuilder(digits(200));
+        TextWindow window = new TextWindow(32);
+        String text = window.reset(model.toString(), 100);
+
+        //type at the cursor, slide on, type again: the first edit has to survive the stitch
+        int cursor = window.toWindow(100);
+        text = text.substring(0, cursor) + "XY" + text.substring(cursor);
+        model.insert(100, "XY");
+        window.edited(text);
+        check("edit before the slide, offsets", window.editStart == 100 && window.editEnd == 100);
+
+        window.slide(170, 170);
+        check("slide keeps the edit", window.getDocument().equals(model.toString()));
+        check("slide moves the window", window.contains(170) && !window.needsSlide(170));
+
+        text = window.getDocument().substring(window.getStart(), window.getEnd());
+        cursor = window.toWindow(170);
+        text = text.substring(0, cursor - 1) + text.substring(cursor);
+        model.deleteCharAt(169);
+        check("edit after the slide, offsets", window.edited(text) && window.editStart == 169 && window.editEnd == 170);
+        check("edit after the slide, document", window.getDocument().equals(model.toString()));
+    }
+
+    private void surrogatePairOnCut() {
+        //an emoji on every other position, so any cut can land inside a pair
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 60; i++) builder.append(i % 2 == 0 ? "\uD83D\uDE00" : "a");
+        String document = builder.toString();
+        TextWindow window = new TextWindow(15);
+        for (int cursor = 0; cursor <= document.length(); cursor++) {
+            String text = window.reset(document, cursor);
+            boolean splitStart = Character.isLowSurrogate(text.charAt(0));
+            boolean splitEnd = Character.isHighSurrogate(text.charAt(text.length() - 1));
+            if (!check("no split pair, cursor " + cursor, !splitStart && !splitEnd)) return;
+            if (!check("no split pair, document, cursor " + cursor, window.getDocument().equals(document))) return;
+        }
+    }
+
+    private void selectionOutsideWindow() {
+        String document = digits(300);
+        TextWindow window = new TextWindow(40);
+        window.reset(document, 200);
+        check("selection start left the window", !window.contains(150) && !window.needsSlide(200));
+
+        window.slide(150, 170);
+        check("slide takes in the whole selection", window.contains(150) && window.contains(170));
+        check("selection maps into the window", window.toWindow(150) == 150 - window.getStart()
+                && window.toWindow(170) == 170 - window.getStart());
+
+        //longer than the window: the cursor end wins, the anchor is clamped
+        window.slide(20, 200);
+        check("long selection keeps the cursor", window.contains(200) && !window.needsSlide(200));
+        check("long selection clamps the anchor", !window.contains(20) && window.toWindow(20) == 0);
+    }
+
+    private void slideMargins() {
+        String document = digits(100);
+        TextWindow window = new TextWindow(32);
+        window.reset(document, 0);
+        check("document start needs no slide", window.getStart() == 0 && !window.needsSlide(0));
+        check("near the end edge with more document", window.needsSlide(window.getEnd() - 1));
+        window.reset(document, 100);
+        check("document end needs no slide", window.getEnd() == 100 && !window.needsSlide(100));
+        check("near the start edge with more document", window.needsSlide(window.getStart() + 1));
+        check("outside the window", window.needsSlide(10));
+
+        TextWindow whole = new TextWindow(200);
+        whole.reset(document, 50);
+        check("short document is one window", whole.getStart() == 0 && whole.getEnd() == 100 && !whole.needsSlide(0)
+                && !whole.needsSlide(100));
+    }
+
+    private void toWindowClamping() {
+        TextWindow window = new TextWindow(20);
+        window.reset(digits(100), 50);
+        check("before the window clamps to 0", window.toWindow(0) == 0);
+        check("after the window clamps to its length", window.toWindow(100) == 20);
+        check("inside maps by the start", window.toWindow(45) == 5);
+    }
+
+    /** Random edits inside the window and slides to random selections, against a plain copy of the document */
+    private void randomEdits() {
+        Random random = new Random(1234);
+        StringBuilder model = new StringBuilder(digits(500));
+        TextWindow window = new TextWindow(48);
+        String text = window.reset(model.toString(), 250);
+        for (int step = 0; step < 5000; step++) {
+            if (random.nextInt(8) == 0) {
+                int anchor = random.nextInt(model.length() + 1);
+                int cursor = random.nextInt(model.length() + 1);
+                text = window.slide(anchor, cursor);
+            } else {
+                int start = random.nextInt(text.length() + 1);
+                int end = Math.min(text.length(), start + random.nextInt(4));
+                String replacement = random.nextInt(3) == 0 ? "" : digits(random.nextInt(5));
+                String before = window.getDocument();
+                text = text.substring(0, start) + replacement + text.substring(end);
+                model.replace(window.getStart() + start, window.getStart() + end, replacement);
+                if (window.edited(text)) {
+                    //the reported replacement applied to the old document gives the new one, as the field applies it
+                    String applied = before.substring(0, window.editStart) + window.editReplacement + before.substring(window.editEnd);
+                    if (!check("step " + step + ": replacement", applied.equals(model.toString())
+                            && window.documentLength() == model.length())) return;
+                }
+            }
+            if (!check("step " + step + ": document", window.getDocument().equals(model.toString()))) return;
+        }
+    }
+
+    private static String digits(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) builder.append((char) ('0' + i % 10));
+        return builder.toString();
+    }
+
+    private boolean check(String what, boolean ok) {
+        checks++;
+        if (ok) return true;
+        failures++;
+        System.out.println("FAILED " + what);
+        return false;
+    }
+}
@@ -0,0 +1,199 @@
+package com.calanti.androidnativekeyboardinputtest.desktop;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.scenes.scene2d.Stage;
+import com.badlogic.gdx.utils.Pool;
+import com.badlogic.gdx.utils.viewport.ScreenViewport;
+import com.calanti.androidnativekeyboardinputtest.libgdxModified_1_9_3.CalTextField;
+import com.calanti.androidnativekeyboardinputtest.ui.TextRowModel;
+import com.calanti.androidnativekeyboardinputtest.ui.VirtualTextList;
+
+/** Scrolls a {@link VirtualTextList} over a {@link TextRowModel} and inserts and removes rows around a focused row,
+ * checking after every step that each live field shows its own row and that edits land in the right row: the row
+ * shifting on insert and remove, the focused field kept alive offscreen and released once unfocused, a removed focused
+ * row and the cursor/selection pairs of the model.
+ * Prints every failed check and a summary. Run with "rows" as the first argument of {@link HeadlessLauncher}.
+ * @Author: calanti
+ */
+
+public class VirtualTextListHarness extends ApplicationAdapter {
+
+    private static final float ROW_HEIGHT = 10;
+    private static final int VISIBLE_ROWS = 10;
+
+    private BitmapFont font;
+    private Stage stage;
+    private TextRowModel model;
+    private VirtualTextList<CalTextField> list;
+    private final Rectangle cullingArea = new Rectangle();
+    private int checks, failures;
+
+    @Override
+    public void create() {
+        Gdx.gl = Gdx.gl20 = KeyboardBridgeBenchmark.noOpGl();
+        font = new BitmapFont();
+        final CalTextField.TextFieldStyle style = new CalTextField.TextFieldStyle();
+        style.font = font;
+        style.fontColor = Color.BLACK;
+        stage = new Stage(new ScreenViewport(), KeyboardBridgeBenchmark.noOp(Batch.class));
+
+        modelPairs();
+
+        model = new TextRowModel();
+        for (int i = 0; i < 100; i++) model.add("row " + i);
+        list = new VirtualTextList<CalTextField>(model, new Pool<CalTextField>() {
+            @Override
+            protected CalTextField newObject() {
+                return new CalTextField("", style);
+            }
+        }, ROW_HEIGHT);
+        list.setWidth(400);
+        stage.addActor(list);
+
+        editFocusedRow();
+        insertAndRemoveAroundFocus();
+        focusedRowOffscreen();
+        removeFocusedRow();
+        externalChange();
+
+        System.out.println("VirtualTextList harness: " + checks + " checks, " + (failures == 0 ? "all passed" : failures + " FAILED"));
+        Gdx.app.exit();
+    }
+
+    @Override
+    public void dispose() {
+        if (font != null) font.dispose();
+    }
+
+    /** removeIndex drops exactly the row's cursor/selection pair */
+    private void modelPairs() {
+        TextRowModel rows = new TextRowModel();
+        for (int i = 0; i < 5; i++) rows.add("row " + i);
+        for (int i = 0; i < 5; i++) rows.set(i, "row " + i, i + 1, i);
+        rows.removeIndex(2);
+        rows.insert(0, "new");
+        check("pairs after remove and insert", rows.size() == 5 && rows.getCursor(0) == 0 && rows.getSelectionStart(0) == 0
+                && rows.getCursor(1) == 1 && rows.getSelectionStart(1) == 0
+                && rows.getCursor(2) == 2 && rows.getSelectionStart(2) == 1
+                && rows.getCursor(3) == 4 && rows.getSelectionStart(3) == 3
+                && rows.getCursor(4) == 5 && rows.getSelectionStart(4) == 4 && rows.getText(3).equals("row 3"));
+    }
+
+    private void editFocusedRow() {
+        view(10);
+        expectLive("first view", 10, VISIBLE_ROWS);
+        CalTextField field = list.getField(15);
+        stage.setKeyboardFocus(field);
+        field.setCursorPosition(field.getText().length());
+        field.typeCharacter('X');
+        check("typing saves the row", model.getText(15).equals("row 15X") && model.getCursor(15) == 7);
+    }
+
+    private void insertAndRemoveAroundFocus() {
+        CalTextField focused = list.getField(15);
+        model.insert(5, "inserted above");
+        view(10);
+        check("insert above shifts the focused field", list.getField(16) == focused && stage.getKeyboardFocus() == focused);
+        expectLive("insert above", 10, VISIBLE_ROWS);
+
+        model.insert(18, "inserted below");
+        view(10);
+        check("insert below keeps the focused field", list.getField(16) == focused);
+        expectLive("insert below", 10, VISIBLE_ROWS);
+
+        model.removeIndex(0);
+        view(10);
+        check("remove above shifts the focused field", list.getField(15) == focused && stage.getKeyboardFocus() == focused);
+        expectLive("remove above", 10, VISIBLE_ROWS);
+
+        //an edit after the shifts lands in the focused field's new row, not its old index
+        focused.typeCharacter('Y');
+        check("typing after the shifts saves the new row", model.getText(15).equals("row 15XY")
+                && model.getText(16).equals("row 16"));
+    }
+
+    private void focusedRowOffscreen() {
+        CalTextField focused = list.getField(15);
+        view(50);
+        check("focused field kept alive offscreen", list.getField(15) == focused && list.getLiveCount() == VISIBLE_ROWS + 1);
+        expectLive("scrolled away", 50, VISIBLE_ROWS);
+
+        model.insert(0, "inserted far above");
+        view(50);
+        check("offscreen focused field follows its row", list.getField(16) == focused);
+        focused.typeCharacter('Z');
+        check("typing offscreen saves the row", model.getText(16).equals("row 15XYZ"));
+
+        stage.unfocus(focused);
+        view(50);
+        check("released once unfocused", list.getField(16) == null && list.getLiveCount() == VISIBLE_ROWS);
+        expectLive("after release", 50, VISIBLE_ROWS);
+        check("release kept the text", model.getText(16).equals("row 15XYZ"));
+    }
+
+    private void removeFocusedRow() {
+        view(10);
+        CalTextField field = list.getField(16);
+        stage.setKeyboardFocus(field);
+        String below = model.getText(17);
+        CalTextField belowField = list.getField(17);
+        model.removeIndex(16);
+        check("removed row loses focus", stage.getKeyboardFocus() == null);
+        //checked before the next layout, the pool may hand it out again then
+        check("removed row's field is freed", field.getStage() == null && list.getField(16) == belowField);
+        view(10);
+        check("row below moved up untouched", model.getText(16).equals(below));
+        expectLive("focused row removed", 10, VISIBLE_ROWS);
+
+        model.clear();
+        view(0);
+        check("clear frees every field", list.getLiveCount() == 0);
+        for (int i = 0; i < 30; i++) model.add("again " + i);
+        view(0);
+        expectLive("refilled", 0, VISIBLE_ROWS);
+    }
+
+    private void externalChange() {
+        model.setText(3, "changed outside");
+        list.modelChanged();
+        view(0);
+        check("modelChanged rebinds live rows", list.getField(3).getText().equals("changed outside"));
+        while (model.size() > 5) model.removeIndex(model.size() - 1);
+        view(0);
+        expectLive("shrunk below the view", 0, 5);
+    }
+
+    /** Scrolls so the first row in view is firstRow, then lays out and acts like a frame */
+    private void view(int firstRow) {
+        list.setHeight(list.getPrefHeight());
+        float height = list.getHeight();
+        cullingArea.set(0, height - (firstRow + VISIBLE_ROWS) * ROW_HEIGHT + 1, list.getWidth(), VISIBLE_ROWS * ROW_HEIGHT - 1);
+        list.setCullingArea(cullingArea);
+        list.validate();
+        stage.act(0);
+    }
+
+    /** Every row in view has a live field showing that row's text, laid out at the row */
+    private void expectLive(String step, int firstRow, int rows) {
+        int last = Math.min(model.size(), firstRow + rows) - 1;
+        for (int row = firstRow; row <= last; row++) {
+            CalTextField field = list.getField(row);
+            if (!check(step + ": row " + row + " live", field != null)) continue;
+            check(step + ": row " + row + " text \"" + field.getText() + "\"", field.getText().equals(model.getText(row)));
+            check(step + ": row " + row + " position", field.getY() == list.getHeight() - (row + 1) * ROW_HEIGHT);
+        }
+    }
+
+    private boolean check(String what, boolean ok) {
+        checks++;
+        if (ok) return true;
+        failures++;
+        System.out.println("FAILED " + what);
+        return false;
+    }
+}
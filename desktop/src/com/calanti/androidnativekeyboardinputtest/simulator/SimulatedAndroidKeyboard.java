@@ -0,0 +1,369 @@
+package com.calanti.androidnativekeyboardinputtest.simulator;
+
+import com.badlogic.gdx.Gdx;
+import com.calanti.androidnativekeyboardinputtest.bridge.KeyboardLog;
+import com.calanti.androidnativekeyboardinputtest.bridge.KeyboardSession;
+import com.calanti.androidnativekeyboardinputtest.bridge.PendingTextCommands;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.AndroidKeyboardFeedbackInterface;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.AndroidTextInputInterface;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** JVM implementation of {@link AndroidTextInputInterface} that runs the same binding logic as AndroidKeyboard without
+ * a device: the {@link KeyboardSession} ids and stale session drops, {@link PendingTextCommands} coalescing and the
+ * text revisions are the shipped classes, only the hidden EditText is a StringBuilder on a {@link SimulatedUiThread}
+ * and the UiFrameTasks are frame-length delays on it. Every hop between the UI and GL threads has a configurable latency.
+ *
+ * Drive it with {@link #type(CharSequence)}, {@link #backspace()} and {@link #replace(int, int, CharSequence)}
+ * as if the user was typing on the soft keyboard. Works with the libgdx headless backend.
+ * @Author: calanti
+ */
+
+public class SimulatedAndroidKeyboard implements AndroidTextInputInterface {
+
+    private final SimulatedUiThread uiThread;
+    private final SimulatedVisibleView visibleView;
+
+    /** Delay of a GL thread -> UI thread hop (runOnUiThread) */
+    public volatile long uiLatencyMillis;
+    /** Delay of a UI thread -> GL thread hop (postRunnable), on top of waiting for the next gdx frame */
+    public volatile long glLatencyMillis;
+    /** Length of a UI frame, TextWatcher changes and gdx commands within one frame are applied as one */
+    public volatile long frameMillis = 16;
+
+    private volatile boolean hardwareKeyboardConnected;
+
+    /** The hidden EditText, UI thread only */
+    private final StringBuilder editText = new StringBuilder();
+    private int selectionStart, selectionEnd;
+    private boolean disableTextWatcher = true;
+    /** Revision of the TextField text the EditText content is based on, UI thread only */
+    private int appliedRevision;
+
+    /** Collects TextWatcher bursts and forwards the net state once per UI frame */
+    private final FrameTask textChangeFlush = new FrameTask() {
+        @Override
+        protected void onFrame() {
+            if (disableTextWatcher) return;
+            KeyboardSession.State state = session.get();
+            if (state.phase != KeyboardSession.BOUND) return;
+            editTextChanged(editText.toString(), selectionStart, selectionEnd, appliedRevision, state.id);
+        }
+    };
+
+    /** Latest cursor/selection/text commands from gdx, applied at most once per UI frame. */
+    private final PendingTextCommands pendingCommands = new PendingTextCommands();
+    private final FrameTask commandFlush = new FrameTask() {
+        @Override
+        protected void onFrame() {
+            flushCommands();
+        }
+    };
+
+    /** Which TextField the simulated EditText is bound to, and under which session id */
+    private final KeyboardSession session = new KeyboardSession();
+
+    /** @param visibleView may be null, otherwise it is told when the simulated IME shows or hides */
+    public SimulatedAndroidKeyboard(SimulatedUiThread uiThread, SimulatedVisibleView visibleView) {
+        this.uiThread = uiThread;
+        this.visibleView = visibleView;
+    }
+
+    public void setHardwareKeyboardConnected(boolean hardwareKeyboardConnected) {
+        this.hardwareKeyboardConnected = hardwareKeyboardConnected;
+    }
+
+    // ---- simulated user input, runs on the simulated UI thread ----
+
+    /** Insert text at the selection, like a soft keyboard commit. */
+    public void type(final CharSequence text) {
+        uiThread.post(new Runnable() {
+            @Override
+            public void run() {
+                int min = Math.min(selectionStart, selectionEnd);
+                int max = Math.max(selectionStart, selectionEnd);
+                editText.replace(min, max, text.toString());
+                selectionStart = selectionEnd = min + text.length();
+                textWatcherChanged();
+            }
+        });
+    }
+
+    /** Delete the selection or the character before the cursor. */
+    public void backspace() {
+        uiThread.post(new Runnable() {
+            @Override
+            public void run() {
+                int min = Math.min(selectionStart, selectionEnd);
+                int max = Math.max(selectionStart, selectionEnd);
+                if (min == max) {
+                    if (min == 0) return;
+                    min--;
+                }
+                editText.delete(min, max);
+                selectionStart = selectionEnd = min;
+                textWatcherChanged();
+            }
+        });
+    }
+
+    /** Replace a range, like an autocorrect or suggestion pick. */
+    public void replace(final int start, final int end, final CharSequence text) {
+        uiThread.post(new Runnable() {
+            @Override
+            public void run() {
+                int s = clampToText(start), e = Math.max(s, clampToText(end));
+                editText.replace(s, e, text.toString());
+                selectionStart = selectionEnd = s + text.length();
+                textWatcherChanged();
+            }
+        });
+    }
+
+    /** Current content of the simulated EditText. Must not be called from the UI thread. */
+    public String getEditText() {
+        final String[] result = new String[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        uiThread.post(new Runnable() {
+            @Override
+            public void run() {
+                result[0] = editText.toString();
+                latch.countDown();
+            }
+        });
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result[0];
+    }
+
+    /** True once the UI thread finished binding the latest requested field */
+    public boolean isBound() {
+        return session.get().phase == KeyboardSession.BOUND;
+    }
+
+    /** Blocks until neither the simulated UI thread nor the GL thread has keyboard work left, whatever the latencies
+     * and however often an edit bounces between them. Must not be called from either thread. */
+    public void awaitSettled() {
+        while (true) {
+            uiThread.awaitIdle();
+            //every hop to the GL thread was posted by now, this runs after all of them
+            final CountDownLatch latch = new CountDownLatch(1);
+            Gdx.app.postRunnable(new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            });
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            //nothing the GL thread ran posted back to the UI thread
+            if (uiThread.isIdle()) return;
+        }
+    }
+
+    private void textWatcherChanged() {
+        if (disableTextWatcher) return;
+        textChangeFlush.schedule();
+    }
+
+    private void editTextChanged(final CharSequence text, final int cursorPosition, final int selectionEnd,
+                                 final int revision, final int sessionId) {
+        KeyboardLog.trace(KeyboardLog.EVENT_TEXT_CHANGED, cursorPosition, selectionEnd, text);
+        toGlThread(new Runnable() {
+            @Override
+            public void run() {
+                //focus moved on (or the keyboard was hidden) while this was in flight, it belongs to another field
+                AndroidKeyboardFeedbackInterface textField = session.target(sessionId);
+                if (textField == null) {
+                    KeyboardLog.trace(KeyboardLog.EVENT_STALE_SESSION, sessionId, session.get().id);
+                    return;
+                }
+                textField.textChanged(text, Math.max(0, cursorPosition), Math.max(0, selectionEnd), revision);
+            }
+        });
+    }
+
+    private void toUiThread(Runnable runnable) {
+        uiThread.postDelayed(runnable, uiThread.isCurrentThread() ? 0 : uiLatencyMillis);
+    }
+
+    private void toGlThread(final Runnable runnable) {
+        long latency = glLatencyMillis;
+        if (latency <= 0) {
+            Gdx.app.postRunnable(runnable);
+            return;
+        }
+        uiThread.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                Gdx.app.postRunnable(runnable);
+            }
+        }, latency);
+    }
+
+    private void setEditText(CharSequence text, int cursorPosition) {
+        editText.setLength(0);
+        editText.append(text);
+        selectionStart = selectionEnd = clampToText(cursorPosition);
+    }
+
+    private int clampToText(int position) {
+        return Math.max(0, Math.min(position, editText.length()));
+    }
+
+    // ---- AndroidTextInputInterface, called from the GL thread ----
+
+    /** Snapshots the field on the calling (GL) thread and goes straight to the UI thread, like AndroidKeyboard */
+    @Override
+    public void requestKeyboard(final AndroidKeyboardFeedbackInterface textField) {
+        //from here on, events of the previous session are dropped
+        final int sessionId = session.bind(textField);
+        pendingCommands.clear();
+        final String text = textField.getText();
+        final int cursorPosition = textField.getCursorPosition();
+        final int revision = textField.getTextRevision();
+        KeyboardLog.trace(KeyboardLog.EVENT_REQUEST_KEYBOARD, cursorPosition, revision);
+        toUiThread(new Runnable() {
+            @Override
+            public void run() {
+                //superseded by a newer request or already unbound, whoever did that sets the EditText up
+                KeyboardSession.State state = session.get();
+                if (state.id != sessionId || state.phase != KeyboardSession.BINDING) return;
+
+                disableTextWatcher = true;
+                //a burst of the previous field still waiting for the frame, gdx drops it anyway
+                textChangeFlush.cancel();
+                setEditText(text, cursorPosition);
+                appliedRevision = revision;
+                if (visibleView != null) visibleView.setKeyboardVisible(true);
+                if (session.bound(sessionId)) {
+                    disableTextWatcher = false;
+                    //commands gdx sent while we were binding
+                    commandFlush.schedule();
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean isHardwareKeyboardConnected() {
+        return hardwareKeyboardConnected;
+    }
+
+    @Override
+    public void forceHideKeyboard() {
+        final int sessionId = session.unbind();
+        KeyboardLog.trace(KeyboardLog.EVENT_FORCE_HIDE, sessionId, 0);
+        pendingCommands.clear();
+        unbind(sessionId, true);
+    }
+
+    /** The simulated EditText has no copy cost worth saving, this is just a hide */
+    @Override
+    public void suspendKeyboard() {
+        final int sessionId = session.unbind();
+        pendingCommands.clear();
+        unbind(sessionId, true);
+    }
+
+    @Override
+    public void keyboardHideDetected() {
+        final int sessionId = session.unbind();
+        KeyboardLog.trace(KeyboardLog.EVENT_HIDE_DETECTED, sessionId, 0);
+        if (sessionId == -1) return;
+        pendingCommands.clear();
+        unbind(sessionId, false);
+    }
+
+    private void unbind(final int sessionId, final boolean hideKeyboard) {
+        toUiThread(new Runnable() {
+            @Override
+            public void run() {
+                disableTextWatcher = true;
+                textChangeFlush.cancel();
+                setEditText("", 0);
+                //gdx already asked for the keyboard again, keep it up
+                if (hideKeyboard && visibleView != null && !session.isActive()) visibleView.setKeyboardVisible(false);
+                session.unbound(sessionId);
+            }
+        });
+    }
+
+    @Override
+    public void setCursorPosition(int position) {
+        if (!session.isActive()) return;
+        setSelection(position, position);
+    }
+
+    @Override
+    public void setSelection(int start, int end) {
+        pendingCommands.setSelection(start, end);
+        commandFlush.schedule();
+    }
+
+    @Override
+    public void setText(CharSequence text, int cursorPosition, int revision) {
+        pendingCommands.setText(text, cursorPosition, revision);
+        commandFlush.schedule();
+    }
+
+    /** Applies the latest queued text and selection to the EditText, text first so later cursor updates win. */
+    private void flushCommands() {
+        //keep them queued until the EditText is set up, the bind reschedules the flush
+        if (session.get().phase != KeyboardSession.BOUND) return;
+        PendingTextCommands commands = pendingCommands;
+        if (!commands.take()) return;
+
+        if (commands.takenText != null) {
+            KeyboardLog.trace(KeyboardLog.EVENT_SET_TEXT, commands.takenTextCursor, commands.takenTextRevision, commands.takenText);
+            disableTextWatcher = true;
+            textChangeFlush.cancel();
+            setEditText(commands.takenText, commands.takenTextCursor);
+            //the TextField already holds this text, so no echo back - later changes just carry the new revision
+            appliedRevision = commands.takenTextRevision;
+            disableTextWatcher = false;
+            commands.takenText = null;
+        }
+
+        if (commands.takenSelection) {
+            KeyboardLog.trace(KeyboardLog.EVENT_SET_SELECTION, commands.takenSelectionStart, commands.takenSelectionEnd);
+            selectionStart = clampToText(commands.takenSelectionStart);
+            selectionEnd = clampToText(commands.takenSelectionEnd);
+        }
+    }
+
+    /** UiFrameTask on the simulated UI thread: {@link #onFrame()} runs at most once per frame, however often
+     * {@link #schedule()} is called from either thread in between. */
+    private abstract class FrameTask implements Runnable {
+
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        protected abstract void onFrame();
+
+        void schedule() {
+            if (!scheduled.compareAndSet(false, true)) return;
+            long delay = frameMillis;
+            if (!uiThread.isCurrentThread()) delay += uiLatencyMillis;
+            uiThread.postDelayed(this, delay);
+        }
+
+        void cancel() {
+            scheduled.set(false);
+        }
+
+        @Override
+        public void run() {
+            //clear first so anything scheduled from within onFrame lands on the next frame
+            if (!scheduled.compareAndSet(true, false)) return;
+            onFrame();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.calanti.androidnativekeyboardinputtest.simulator;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/** Stand-in for the Android UI thread (main Looper) when running the keyboard bridge off-device.
+ * Everything the real bridge does on the UI thread runs on this single thread, in order.
+ * @Author: calanti
+ */
+
+public class SimulatedUiThread {
+
+    private final ScheduledExecutorService executor;
+    private volatile Thread thread;
+
+    /** Runnables posted and not finished yet, delayed ones included, guarded by idleLock */
+    private int pending;
+    private final Object idleLock = new Object();
+
+    public SimulatedUiThread() {
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "simulated-ui");
+                thread.setDaemon(true);
+                SimulatedUiThread.this.thread = thread;
+                return thread;
+            }
+        });
+    }
+
+    /** Activity.runOnUiThread / Handler.post */
+    public void post(Runnable runnable) {
+        executor.execute(track(runnable));
+    }
+
+    /** Handler.postDelayed, a delay of 0 or less posts immediately */
+    public void postDelayed(Runnable runnable, long delayMillis) {
+        if (delayMillis <= 0) executor.execute(track(runnable));
+        else executor.schedule(track(runnable), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private Runnable track(final Runnable runnable) {
+        synchronized (idleLock) {
+            pending++;
+        }
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } finally {
+                    synchronized (idleLock) {
+                        if (--pending == 0) idleLock.notifyAll();
+                    }
+                }
+            }
+        };
+    }
+
+    /** True if nothing is queued, delayed or running */
+    public boolean isIdle() {
+        synchronized (idleLock) {
+            return pending == 0;
+        }
+    }
+
+    /** Blocks until nothing is queued, delayed or running, including whatever that work posts in turn.
+     * Must not be called from the UI thread itself. */
+    public void awaitIdle() {
+        synchronized (idleLock) {
+            try {
+                while (pending > 0) idleLock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isCurrentThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /** Blocks until everything posted so far (without delay) has run. Must not be called from the UI thread itself. */
+    public void drain() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void dispose() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,97 @@
+package com.calanti.androidnativekeyboardinputtest.simulator;
+
+import com.calanti.androidnativekeyboardinputtest.bridge.VisibleViewDispatcher;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.KeyboardHeightListener;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.VisibleView;
+import com.calanti.androidnativekeyboardinputtest.interfaces.android.VisibleViewSizeChangeListener;
+
+/** JVM implementation of {@link VisibleView} that models the soft keyboard sliding in and out.
+ * Size changes are reported on the {@link SimulatedUiThread} after {@link #keyboardAnimationMillis},
+ * like onLayoutChange on a device, and reach listeners on the GL thread.
+ * @Author: calanti
+ */
+
+public class SimulatedVisibleView implements VisibleView {
+
+    private final SimulatedUiThread uiThread;
+    private final float screenWidth, screenHeight;
+
+    private volatile float width, height;
+    private final VisibleViewDispatcher dispatcher;
+
+    /** Height of the simulated keyboard in screen pixels */
+    public volatile float keyboardHeight;
+    /** Time between a keyboard show/hide and the layout change reporting it */
+    public volatile long keyboardAnimationMillis = 250;
+
+    public SimulatedVisibleView(SimulatedUiThread uiThread, float screenWidth, float screenHeight, float keyboardHeight) {
+        this.uiThread = uiThread;
+        this.screenWidth = this.width = screenWidth;
+        this.screenHeight = this.height = screenHeight;
+        this.keyboardHeight = keyboardHeight;
+        this.dispatcher = new VisibleViewDispatcher(screenWidth, screenHeight);
+    }
+
+    /** Simulate the IME appearing or disappearing (also driven by {@link SimulatedAndroidKeyboard}). */
+    public void setKeyboardVisible(final boolean visible) {
+        uiThread.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                float newHeight = visible ? screenHeight - keyboardHeight : screenHeight;
+                if (newHeight != height) onSizeChange(screenWidth, newHeight);
+                onKeyboardHeightChange(screenHeight - newHeight, System.currentTimeMillis());
+            }
+        }, keyboardAnimationMillis);
+    }
+
+    public boolean isKeyboardVisible() {
+        return height < screenHeight;
+    }
+
+    @Override
+    public void onSizeChange(float width, float height) {
+        this.width = width;
+        this.height = height;
+        dispatcher.sizeChanged(width, height);
+    }
+
+    @Override
+    public void onKeyboardHeightChange(float keyboardHeight, long timeMillis) {
+        dispatcher.keyboardHeightChanged(keyboardHeight, timeMillis);
+    }
+
+    @Override
+    public void addListener(VisibleViewSizeChangeListener sizeChangeListener) {
+        dispatcher.addListener(sizeChangeListener);
+    }
+
+    @Override
+    public void removeListener(VisibleViewSizeChangeListener sizeChangeListener) {
+        dispatcher.removeListener(sizeChangeListener);
+    }
+
+    @Override
+    public void addKeyboardHeightListener(KeyboardHeightListener keyboardHeightListener) {
+        dispatcher.addKeyboardHeightListener(keyboardHeightListener);
+    }
+
+    @Override
+    public void removeKeyboardHeightListener(KeyboardHeightListener keyboardHeightListener) {
+        dispatcher.removeKeyboardHeightListener(keyboardHeightListener);
+    }
+
+    @Override
+    public float getKeyboardHeight() {
+        return dispatcher.getKeyboardHeight();
+    }
+
+    @Override
+    public float getWidth() {
+        return width;
+    }
+
+    @Override
+    public float getHeight() {
+        return height;
+    }
+}